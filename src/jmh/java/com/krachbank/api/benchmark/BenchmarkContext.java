@@ -0,0 +1,65 @@
+package com.krachbank.api.benchmark;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.krachbank.api.ApiApplication;
+import com.krachbank.api.configuration.IBANGenerator;
+import com.krachbank.api.models.Account;
+import com.krachbank.api.models.AccountType;
+import com.krachbank.api.models.User;
+import com.krachbank.api.repository.AccountRepository;
+import com.krachbank.api.repository.UserRepository;
+
+// starts the application without a web server on its own in memory database
+public final class BenchmarkContext {
+
+    private BenchmarkContext() {
+    }
+
+    // properties are passed as command line arguments so they win from application.properties
+    public static ConfigurableApplicationContext start(String... extraProperties) {
+        List<String> args = new ArrayList<>(List.of(
+                "--spring.datasource.url=jdbc:h2:mem:bench-" + UUID.randomUUID() + ";DB_CLOSE_ON_EXIT=FALSE",
+                "--logging.level.root=WARN",
+                "--logging.level.org.springframework.orm.jpa=WARN",
+                "--spring.devtools.restart.enabled=false"));
+        for (String property : extraProperties) {
+            args.add("--" + property);
+        }
+        return new SpringApplicationBuilder(ApiApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(args.toArray(new String[0]));
+    }
+
+    // an user that will not hit any limit during a benchmark
+    public static User createUser(ConfigurableApplicationContext context, String username) {
+        User user = new User();
+        user.setUsername(username);
+        user.setPassword("benchmark");
+        user.setEmail(username + "@benchmark.local");
+        user.setCreatedAt(LocalDateTime.now());
+        user.setActive(true);
+        user.setDailyLimit(new BigDecimal("1000000000000"));
+        return context.getBean(UserRepository.class).save(user);
+    }
+
+    public static Account createAccount(ConfigurableApplicationContext context, User user) {
+        Account account = new Account();
+        account.setIban(IBANGenerator.generateIBAN());
+        account.setUser(user);
+        account.setAccountType(AccountType.CHECKING);
+        account.setBalance(new BigDecimal("1000000000000"));
+        account.setAbsoluteLimit(BigDecimal.ZERO);
+        account.setTransactionLimit(new BigDecimal("1000000000000"));
+        account.setCreatedAt(LocalDateTime.now());
+        return context.getBean(AccountRepository.class).save(account);
+    }
+}
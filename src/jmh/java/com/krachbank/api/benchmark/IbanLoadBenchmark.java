@@ -0,0 +1,97 @@
+package com.krachbank.api.benchmark;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.iban4j.Iban;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.krachbank.api.converters.IbanConverter;
+import com.krachbank.api.models.Account;
+import com.krachbank.api.models.AccountType;
+import com.krachbank.api.models.User;
+import com.krachbank.api.repository.AccountRepository;
+import com.krachbank.api.service.AccountBatchService;
+
+// time to load 100k accounts, and the part of it that is turning the iban column back into an Iban
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IbanLoadBenchmark {
+
+    private static final int ACCOUNTS = 100_000;
+
+    private ConfigurableApplicationContext context;
+    private AccountRepository accountRepository;
+    private TransactionTemplate readOnlyTransaction;
+    private final IbanConverter converter = new IbanConverter();
+    private final List<String> ibans = new ArrayList<>(ACCOUNTS);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        accountRepository = context.getBean(AccountRepository.class);
+        readOnlyTransaction = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        readOnlyTransaction.setReadOnly(true);
+
+        User user = BenchmarkContext.createUser(context, "benchmark");
+        List<Account> accounts = new ArrayList<>(ACCOUNTS);
+        for (int i = 0; i < ACCOUNTS; i++) {
+            Account account = new Account();
+            account.setUser(user);
+            account.setAccountType(AccountType.CHECKING);
+            account.setBalance(BigDecimal.ZERO);
+            account.setAbsoluteLimit(BigDecimal.ZERO);
+            accounts.add(account);
+        }
+        ibans.addAll(context.getBean(AccountBatchService.class).createAccounts(accounts));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int loadAccounts() {
+        return readOnlyTransaction.execute(status -> accountRepository.findAll().size());
+    }
+
+    @Benchmark
+    public int convertIbans() {
+        int hash = 0;
+        for (String iban : ibans) {
+            hash += converter.convertToEntityAttribute(iban).hashCode();
+        }
+        return hash;
+    }
+
+    // what the converter did before
+    @Benchmark
+    public int validateIbans() {
+        int hash = 0;
+        for (String iban : ibans) {
+            hash += Iban.valueOf(iban).hashCode();
+        }
+        return hash;
+    }
+}
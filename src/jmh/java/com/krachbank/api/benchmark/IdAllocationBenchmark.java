@@ -0,0 +1,130 @@
+package com.krachbank.api.benchmark;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.krachbank.api.configuration.IBANGenerator;
+import com.krachbank.api.dto.BatchTransactionDTOResponse;
+import com.krachbank.api.models.Account;
+import com.krachbank.api.models.AccountType;
+import com.krachbank.api.models.Transaction;
+import com.krachbank.api.models.User;
+import com.krachbank.api.repository.UserRepository;
+import com.krachbank.api.service.AccountService;
+import com.krachbank.api.service.TransactionBatchService;
+
+// inserts per second of the bulk paths for a sequence call per id (allocation size 1) and for blocks of ids.
+// run it on the commit before the pooled sequences too for users on an identity column
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IdAllocationBenchmark {
+
+    private static final int BULK_SIZE = 100;
+
+    @Param({ "1", "50" })
+    public int allocationSize;
+
+    private final AtomicLong sequence = new AtomicLong();
+    private ConfigurableApplicationContext context;
+    private AccountService accountService;
+    private TransactionBatchService transactionBatchService;
+    private UserRepository userRepository;
+    private TransactionTemplate transactionTemplate;
+    private User user;
+    private Account sendingAccount;
+    private Account receivingAccount;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("spring.jpa.properties.application.id.allocation-size=" + allocationSize);
+        accountService = context.getBean(AccountService.class);
+        transactionBatchService = context.getBean(TransactionBatchService.class);
+        userRepository = context.getBean(UserRepository.class);
+        transactionTemplate = context.getBean(TransactionTemplate.class);
+
+        user = BenchmarkContext.createUser(context, "benchmark");
+        sendingAccount = BenchmarkContext.createAccount(context, user);
+        receivingAccount = BenchmarkContext.createAccount(context, user);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BULK_SIZE)
+    public List<Account> createAccounts() {
+        List<Account> accounts = new ArrayList<>(BULK_SIZE);
+        for (int i = 0; i < BULK_SIZE; i++) {
+            Account account = new Account();
+            account.setIban(IBANGenerator.generateIBAN());
+            account.setUser(user);
+            account.setAccountType(AccountType.SAVINGS);
+            account.setBalance(BigDecimal.ZERO);
+            account.setAbsoluteLimit(BigDecimal.ZERO);
+            account.setTransactionLimit(BigDecimal.TEN);
+            accounts.add(account);
+        }
+        return accountService.createAccounts(accounts);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BULK_SIZE)
+    public List<BatchTransactionDTOResponse> batchTransfers() {
+        List<Transaction> transactions = new ArrayList<>(BULK_SIZE);
+        for (int i = 0; i < BULK_SIZE; i++) {
+            Transaction transaction = new Transaction();
+            transaction.setAmount(BigDecimal.ONE);
+            transaction.setFromAccount(sendingAccount);
+            transaction.setToAccount(receivingAccount);
+            transaction.setInitiator(user);
+            transaction.setCreatedAt(LocalDateTime.now());
+            transaction.setDescription("benchmark");
+            transactions.add(transaction);
+        }
+        return transactionBatchService.createTransactions(transactions);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BULK_SIZE)
+    public List<User> createUsers() {
+        List<User> users = new ArrayList<>(BULK_SIZE);
+        for (int i = 0; i < BULK_SIZE; i++) {
+            long n = sequence.incrementAndGet();
+            User newUser = new User();
+            newUser.setUsername("bulk" + n);
+            newUser.setPassword("benchmark");
+            newUser.setEmail("bulk" + n + "@benchmark.local");
+            newUser.setCreatedAt(LocalDateTime.now());
+            newUser.setDailyLimit(BigDecimal.TEN);
+            users.add(newUser);
+        }
+        return transactionTemplate.execute(status -> userRepository.saveAll(users));
+    }
+}
@@ -0,0 +1,82 @@
+package com.krachbank.api.benchmark;
+
+import java.security.Key;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.krachbank.api.models.User;
+import com.krachbank.api.security.VerifiedToken;
+import com.krachbank.api.service.JwtService;
+
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+
+// what JwtAuthenticationFilter spends on the token for every request, without the user lookup
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtBenchmark {
+
+    // same secret as application.properties
+    private static final String SECRET = "404E635266556A586E3272357538782F413F4428472B4B6250645367566B5970";
+
+    private JwtService jwtService;
+    private User user;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtService = new JwtService(SECRET, 86400000, 10000, new SimpleMeterRegistry());
+        user = new User();
+        user.setUsername("benchmark");
+        user.setActive(true);
+        token = jwtService.generateToken(user);
+    }
+
+    // how the filter used to do it: extractUsername and isTokenValid parse the token three times,
+    // every parse decodes the secret and builds a new key and parser
+    @Benchmark
+    public boolean parsePerClaim() {
+        String username = legacyClaims(token).getSubject();
+        return username.equals(user.getUsername())
+                && legacyClaims(token).getSubject().equals(user.getUsername())
+                && !legacyClaims(token).getExpiration().before(new Date());
+    }
+
+    // one parse with the shared parser and no cache at all. a cache of size 0 is no baseline,
+    // caffeine evicts after the put and can still hit in between
+    @Benchmark
+    public boolean parseOnce() {
+        VerifiedToken verified = VerifiedToken.of(jwtService.extractClaim(token, claims -> claims));
+        return jwtService.isTokenValid(verified, user);
+    }
+
+    // the same token again, like a client does on every request
+    @Benchmark
+    public boolean cachedToken() {
+        VerifiedToken verified = jwtService.verify(token);
+        return jwtService.isTokenValid(verified, user);
+    }
+
+    private static Claims legacyClaims(String token) {
+        Key key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET));
+        return Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token).getBody();
+    }
+}
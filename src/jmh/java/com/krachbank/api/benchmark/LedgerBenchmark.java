@@ -0,0 +1,125 @@
+package com.krachbank.api.benchmark;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.krachbank.api.models.User;
+import com.krachbank.api.repository.LedgerEntryRepository;
+import com.krachbank.api.service.LedgerService;
+
+// balance of an account at a random moment in 90 days of history, 1M ledger entries over 100 accounts
+// with hourly snapshots, against adding up every entry of the account up to that moment
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LedgerBenchmark {
+
+    private static final int ACCOUNTS = 100;
+    private static final int ENTRIES = 1_000_000;
+    private static final Duration HISTORY = Duration.ofDays(90);
+    private static final LocalDateTime BEGINNING = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private ConfigurableApplicationContext context;
+    private LedgerService ledgerService;
+    private LedgerEntryRepository ledgerEntryRepository;
+    private final List<Long> accountIds = new ArrayList<>();
+    private final Random random = new Random(42);
+    private LocalDateTime start;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        ledgerService = context.getBean(LedgerService.class);
+        ledgerEntryRepository = context.getBean(LedgerEntryRepository.class);
+
+        User user = BenchmarkContext.createUser(context, "benchmark");
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accountIds.add(BenchmarkContext.createAccount(context, user).getId());
+        }
+
+        start = LocalDateTime.now().minus(HISTORY).truncatedTo(ChronoUnit.HOURS);
+        insertHistory(context.getBean(JdbcTemplate.class));
+    }
+
+    // plain jdbc like TransactionBenchmark, half a million transfers of two entries each evenly spread over
+    // the history. every hour the live balances are moved along and the snapshots are taken, like the
+    // scheduled job would have done. negative ids so the rows never collide with the ids hibernate hands out
+    private void insertHistory(JdbcTemplate jdbcTemplate) {
+        long stepMillis = HISTORY.toMillis() / (ENTRIES / 2);
+        LocalDateTime hour = start.plusHours(1);
+        List<Object[]> rows = new ArrayList<>();
+        for (int transfer = 0; transfer < ENTRIES / 2; transfer++) {
+            LocalDateTime createdAt = start.plus(Duration.ofMillis((transfer + 1) * stepMillis));
+            if (createdAt.isAfter(hour)) {
+                closeHour(jdbcTemplate, rows, hour);
+                hour = hour.plusHours(1);
+            }
+            long from = accountIds.get(random.nextInt(ACCOUNTS));
+            long to = accountIds.get(random.nextInt(ACCOUNTS));
+            BigDecimal amount = BigDecimal.valueOf(1 + random.nextInt(10_000), 2);
+            Timestamp timestamp = Timestamp.valueOf(createdAt);
+            rows.add(new Object[] { -2L * transfer - 1, from, -(long) transfer - 1, amount.negate(), timestamp });
+            rows.add(new Object[] { -2L * transfer - 2, to, -(long) transfer - 1, amount, timestamp });
+        }
+        closeHour(jdbcTemplate, rows, hour);
+    }
+
+    private void closeHour(JdbcTemplate jdbcTemplate, List<Object[]> rows, LocalDateTime hour) {
+        jdbcTemplate.batchUpdate("INSERT INTO ledger_entry (id, account_id, transaction_id, amount, created_at) "
+                + "VALUES (?, ?, ?, ?, ?)", rows);
+        rows.clear();
+        jdbcTemplate.update("UPDATE account a SET balance = balance + (SELECT COALESCE(SUM(e.amount), 0) "
+                + "FROM ledger_entry e WHERE e.account_id = a.id AND e.created_at > ? AND e.created_at <= ?)",
+                Timestamp.valueOf(hour.minusHours(1)), Timestamp.valueOf(hour));
+        ledgerService.takeSnapshots(hour);
+    }
+
+    private Long randomAccount() {
+        return accountIds.get(random.nextInt(ACCOUNTS));
+    }
+
+    private LocalDateTime randomMoment() {
+        return start.plusSeconds(random.nextLong(HISTORY.toSeconds()));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public BigDecimal balanceAt() {
+        return ledgerService.getBalanceAt(randomAccount(), randomMoment());
+    }
+
+    // what a balance in the past costs without snapshots
+    @Benchmark
+    public BigDecimal replayAllEntries() {
+        return ledgerEntryRepository.sumAmount(randomAccount(), BEGINNING, randomMoment());
+    }
+}
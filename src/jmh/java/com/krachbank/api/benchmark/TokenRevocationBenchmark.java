@@ -0,0 +1,122 @@
+package com.krachbank.api.benchmark;
+
+import java.lang.ref.Reference;
+import java.time.Duration;
+import java.util.Date;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.krachbank.api.security.VerifiedToken;
+import com.krachbank.api.service.TokenRevocationWheel;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// the revocation check JwtAuthenticationFilter does on every request, with 1M revoked tokens spread
+// over the default 24h lifetime. the heap the wheel keeps next to a plain map of the token ids is in the
+// secondary results of Memory
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = { "-Xmx2g" })
+public class TokenRevocationBenchmark {
+
+    private static final int REVOKED = 1_000_000;
+    private static final long LIFETIME = 86_400_000;
+
+    private TokenRevocationWheel wheel;
+    private VerifiedToken revoked;
+    private VerifiedToken notRevoked;
+    private long wheelBytes;
+    private long mapBytes;
+
+    // measured once in the trial setup. jmh zeroes the counters before every iteration and reads them
+    // after the teardown, so they are filled in there
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Memory {
+        public double wheelBytesPerToken;
+        public double mapBytesPerToken;
+
+        @TearDown(Level.Iteration)
+        public void record(TokenRevocationBenchmark benchmark) {
+            wheelBytesPerToken = (double) benchmark.wheelBytes / REVOKED;
+            mapBytesPerToken = (double) benchmark.mapBytes / REVOKED;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        long before = usedHeap();
+        wheel = new TokenRevocationWheel(LIFETIME, Duration.ofMinutes(1), new SimpleMeterRegistry());
+        for (int i = 0; i < REVOKED; i++) {
+            VerifiedToken token = token();
+            wheel.revoke(token);
+            if (i == REVOKED / 2) {
+                revoked = token;
+            }
+        }
+        wheelBytes = usedHeap() - before;
+
+        // what the obvious exact set would keep: jti to expiry
+        before = usedHeap();
+        Map<String, Date> exact = new ConcurrentHashMap<>();
+        for (int i = 0; i < REVOKED; i++) {
+            VerifiedToken token = token();
+            exact.put(token.tokenId(), token.expiration());
+        }
+        mapBytes = usedHeap() - before;
+        // the map is not used after this, it must not be collected before it is measured
+        Reference.reachabilityFence(exact);
+
+        notRevoked = token();
+    }
+
+    @Benchmark
+    public boolean revokedToken(Memory memory) {
+        return wheel.isRevoked(revoked);
+    }
+
+    @Benchmark
+    public boolean validToken(Memory memory) {
+        return wheel.isRevoked(notRevoked);
+    }
+
+    private static VerifiedToken token() {
+        Claims claims = Jwts.claims();
+        claims.setId(UUID.randomUUID().toString());
+        claims.setSubject("benchmark");
+        long issuedAt = System.currentTimeMillis() - ThreadLocalRandom.current().nextLong(LIFETIME - 120_000);
+        claims.setIssuedAt(new Date(issuedAt));
+        claims.setExpiration(new Date(issuedAt + LIFETIME));
+        return VerifiedToken.of(claims);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,97 @@
+package com.krachbank.api.benchmark;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.krachbank.api.dto.BatchTransactionDTOResponse;
+import com.krachbank.api.models.Account;
+import com.krachbank.api.models.Transaction;
+import com.krachbank.api.models.User;
+import com.krachbank.api.service.TransactionBatchService;
+import com.krachbank.api.service.TransactionService;
+
+// transfers per second of one batch against the same transfers one by one, over ten accounts
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransactionBatchBenchmark {
+
+    private static final int ACCOUNTS = 10;
+    private static final int BATCH_SIZE = 500;
+
+    private ConfigurableApplicationContext context;
+    private TransactionService transactionService;
+    private TransactionBatchService transactionBatchService;
+    private User user;
+    private final List<Account> accounts = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        transactionService = context.getBean(TransactionService.class);
+        transactionBatchService = context.getBean(TransactionBatchService.class);
+
+        user = BenchmarkContext.createUser(context, "benchmark");
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accounts.add(BenchmarkContext.createAccount(context, user));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    private Transaction transfer(int i) {
+        Transaction transaction = new Transaction();
+        transaction.setFromAccount(accounts.get(i % ACCOUNTS));
+        transaction.setToAccount(accounts.get((i + 1) % ACCOUNTS));
+        transaction.setInitiator(user);
+        transaction.setAmount(BigDecimal.ONE);
+        transaction.setCreatedAt(LocalDateTime.now());
+        return transaction;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int singleTransfers() throws Exception {
+        int created = 0;
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            if (transactionService.createTransaction(transfer(i)).isPresent()) {
+                created++;
+            }
+        }
+        return created;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public List<BatchTransactionDTOResponse> batch() {
+        List<Transaction> transactions = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            transactions.add(transfer(i));
+        }
+        return transactionBatchService.createTransactions(transactions);
+    }
+}
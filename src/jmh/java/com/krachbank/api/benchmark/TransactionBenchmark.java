@@ -0,0 +1,118 @@
+package com.krachbank.api.benchmark;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.krachbank.api.models.Account;
+import com.krachbank.api.models.Transaction;
+import com.krachbank.api.models.User;
+import com.krachbank.api.service.TransactionJpa;
+
+// hot path of a transfer, with a growing transaction history for the sending user
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransactionBenchmark {
+
+    @Param({ "10", "10000", "1000000" })
+    public int historySize;
+
+    private ConfigurableApplicationContext context;
+    private TransactionJpa transactionService;
+    private User user;
+    private Account sendingAccount;
+    private Account receivingAccount;
+    private Transaction transaction;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        transactionService = context.getBean(TransactionJpa.class);
+
+        user = BenchmarkContext.createUser(context, "benchmark");
+        sendingAccount = BenchmarkContext.createAccount(context, user);
+        receivingAccount = BenchmarkContext.createAccount(context, user);
+
+        insertHistory(context.getBean(JdbcTemplate.class));
+        transactionService.rebuildDailySpend();
+
+        transaction = newTransaction();
+    }
+
+    // plain jdbc, a million entities through jpa would take longer then the benchmark itself
+    // negative ids so the rows never collide with the ids hibernate hands out
+    private void insertHistory(JdbcTemplate jdbcTemplate) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 1; i <= historySize; i++) {
+            rows.add(new Object[] { -(long) i, BigDecimal.ONE, Timestamp.valueOf(now.minusDays(i % 365)),
+                    "history", user.getId(), sendingAccount.getId(), receivingAccount.getId() });
+            if (rows.size() == 10_000 || i == historySize) {
+                jdbcTemplate.batchUpdate("INSERT INTO transaction "
+                        + "(id, amount, created_at, description, initiator_id, from_account_id, to_account_id) "
+                        + "VALUES (?, ?, ?, ?, ?, ?, ?)", rows);
+                rows.clear();
+            }
+        }
+    }
+
+    private Transaction newTransaction() {
+        Transaction newTransaction = new Transaction();
+        newTransaction.setAmount(BigDecimal.ONE);
+        newTransaction.setFromAccount(sendingAccount);
+        newTransaction.setToAccount(receivingAccount);
+        newTransaction.setInitiator(user);
+        newTransaction.setCreatedAt(LocalDateTime.now());
+        newTransaction.setDescription("benchmark");
+        return newTransaction;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Optional<Transaction> createTransaction() throws Exception {
+        return transactionService.createTransaction(newTransaction());
+    }
+
+    @Benchmark
+    public boolean isValidTransaction() {
+        return transactionService.isValidTransaction(transaction);
+    }
+
+    @Benchmark
+    public Boolean reachedAbsoluteLimit() throws Exception {
+        return transactionService.reachedAbsoluteLimit(sendingAccount, BigDecimal.ONE);
+    }
+
+    @Benchmark
+    public BigDecimal getUserTotalAmountSpendAtDate() {
+        return transactionService.getUserTotalAmountSpendAtDate(user, LocalDateTime.now());
+    }
+}
@@ -0,0 +1,91 @@
+package com.krachbank.api.benchmark;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.krachbank.api.dto.TransactionDTOResponse;
+import com.krachbank.api.models.Account;
+import com.krachbank.api.models.Transaction;
+import com.krachbank.api.models.User;
+import com.krachbank.api.service.TransactionPipelineService;
+import com.krachbank.api.service.TransactionService;
+
+// transfers per second from 8 threads between 4 accounts, through the pipeline against a transfer per request
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class TransactionPipelineBenchmark {
+
+    private static final int ACCOUNTS = 4;
+
+    private ConfigurableApplicationContext context;
+    private TransactionService transactionService;
+    private TransactionPipelineService transactionPipeline;
+    private User user;
+    private final List<Account> accounts = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("application.transactions.pipeline.enabled=true");
+        transactionService = context.getBean(TransactionService.class);
+        transactionPipeline = context.getBean(TransactionPipelineService.class);
+
+        user = BenchmarkContext.createUser(context, "benchmark");
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accounts.add(BenchmarkContext.createAccount(context, user));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    private Transaction transfer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(ACCOUNTS);
+        int to = (from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+
+        Transaction transaction = new Transaction();
+        transaction.setFromAccount(accounts.get(from));
+        transaction.setToAccount(accounts.get(to));
+        transaction.setInitiator(user);
+        transaction.setAmount(BigDecimal.ONE);
+        transaction.setCreatedAt(LocalDateTime.now());
+        return transaction;
+    }
+
+    @Benchmark
+    public TransactionDTOResponse pipelined() throws Exception {
+        return transactionPipeline.submit(transfer()).get();
+    }
+
+    @Benchmark
+    public Optional<Transaction> direct() throws Exception {
+        return transactionService.createTransaction(transfer());
+    }
+}
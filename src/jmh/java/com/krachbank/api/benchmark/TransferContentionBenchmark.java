@@ -0,0 +1,83 @@
+package com.krachbank.api.benchmark;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.krachbank.api.models.Account;
+import com.krachbank.api.models.Transaction;
+import com.krachbank.api.models.User;
+import com.krachbank.api.service.TransactionService;
+
+// transfers per second from 8 threads between 4 accounts, so most transfers share an account with another
+// one that is running. per locking mode of TransferRunner
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class TransferContentionBenchmark {
+
+    private static final int ACCOUNTS = 4;
+
+    @Param({ "conditional", "pessimistic", "optimistic" })
+    public String locking;
+
+    private ConfigurableApplicationContext context;
+    private TransactionService transactionService;
+    private User user;
+    private final List<Account> accounts = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("application.transactions.locking=" + locking);
+        transactionService = context.getBean(TransactionService.class);
+
+        user = BenchmarkContext.createUser(context, "benchmark");
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accounts.add(BenchmarkContext.createAccount(context, user));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Optional<Transaction> createTransaction() throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(ACCOUNTS);
+        int to = (from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+
+        Transaction transaction = new Transaction();
+        transaction.setFromAccount(accounts.get(from));
+        transaction.setToAccount(accounts.get(to));
+        transaction.setInitiator(user);
+        transaction.setAmount(BigDecimal.ONE);
+        transaction.setCreatedAt(LocalDateTime.now());
+        return transactionService.createTransaction(transaction);
+    }
+}
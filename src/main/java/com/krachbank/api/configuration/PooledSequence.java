@@ -0,0 +1,20 @@
+package com.krachbank.api.configuration;
+
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+// id from a database sequence that hands out a block of ids per call, so inserts need no round trip
+// for their id and can be jdbc batched. the block size is the same for every entity, see PooledSequenceGenerator
+@IdGeneratorType(PooledSequenceGenerator.class)
+@Retention(RUNTIME)
+@Target(FIELD)
+public @interface PooledSequence {
+
+    // name of the database sequence
+    String value();
+}
@@ -1,8 +1,12 @@
 package com.krachbank.api.configuration;
 
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -14,22 +18,30 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
+import com.krachbank.api.security.BoundedPasswordEncoder;
+import com.krachbank.api.security.CalibratedBCryptPasswordEncoder;
 import com.krachbank.api.security.JwtAuthenticationFilter;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
 import jakarta.servlet.Filter;
 
 @Configuration
 @EnableWebSecurity
 public class WebSecurityConfiguration {
 
+    private static final Logger log = LoggerFactory.getLogger(WebSecurityConfiguration.class);
+
     private final UserDetailsService userDetailsService;
     private final JwtAuthenticationFilter jwtAuthFilter;
 
@@ -38,16 +50,36 @@ public class WebSecurityConfiguration {
         this.jwtAuthFilter = jwtAuthFilter;
     }
 
+    // bcrypt runs on its own bounded pool so login bursts can not take the cpu of the other endpoints
     @Bean
-    public BCryptPasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder(12);
+    public PasswordEncoder passwordEncoder(
+            @Value("${application.security.password-hashing.threads:0}") int threads,
+            @Value("${application.security.password-hashing.queue-capacity:64}") int queueCapacity,
+            @Value("${application.security.password-hashing.retry-after:PT2S}") Duration retryAfter,
+            @Value("${application.security.password-hashing.cost:0}") int cost,
+            @Value("${application.security.password-hashing.budget:PT0.25S}") Duration budget,
+            @Value("${application.security.password-hashing.min-cost:10}") int minCost,
+            @Value("${application.security.password-hashing.max-cost:14}") int maxCost,
+            MeterRegistry meterRegistry) {
+        // 0: half of the cores
+        int hashingThreads = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        // 0: the highest cost that hashes within the budget on this node
+        int bcryptCost = cost > 0 ? cost : CalibratedBCryptPasswordEncoder.calibrate(budget, minCost, maxCost);
+        log.info("BCrypt cost {}{}", bcryptCost, cost > 0 ? " (configured)" : " (calibrated for " + budget + ")");
+        Gauge.builder("security.password.cost", () -> bcryptCost).register(meterRegistry);
+
+        return new BoundedPasswordEncoder(new CalibratedBCryptPasswordEncoder(bcryptCost), hashingThreads,
+                queueCapacity, retryAfter, meterRegistry);
     }
 
     @Bean
-    public AuthenticationProvider authenticationProvider() {
+    public AuthenticationProvider authenticationProvider(PasswordEncoder passwordEncoder,
+            UserDetailsPasswordService userDetailsPasswordService) {
         DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
         authProvider.setUserDetailsService(userDetailsService);
-        authProvider.setPasswordEncoder(passwordEncoder());
+        authProvider.setPasswordEncoder(passwordEncoder);
+        // hashes with a lower cost than this node uses are rehashed after a successful login
+        authProvider.setUserDetailsPasswordService(userDetailsPasswordService);
         return authProvider;
     }
 
@@ -57,7 +89,8 @@ public class WebSecurityConfiguration {
     }
 
     @Bean
-    public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain filterChain(HttpSecurity http, AuthenticationProvider authenticationProvider)
+            throws Exception {
         http
             .csrf(AbstractHttpConfigurer::disable)
             .headers(headers -> headers.frameOptions(frame -> frame.disable()))
@@ -75,7 +108,7 @@ public class WebSecurityConfiguration {
                 .anyRequest().authenticated())
             .sessionManagement(session -> session
                 .sessionCreationPolicy(SessionCreationPolicy.STATELESS))
-            .authenticationProvider(authenticationProvider())
+            .authenticationProvider(authenticationProvider)
             .addFilterBefore((Filter) jwtAuthFilter, UsernamePasswordAuthenticationFilter.class);
 
         return http.build();
@@ -1,31 +1,49 @@
 package com.krachbank.api.controllers;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Window;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.krachbank.api.configuration.IBANGenerator;
+import com.krachbank.api.dto.AccountDTO;
 import com.krachbank.api.dto.AccountDTOResponse;
+import com.krachbank.api.dto.BalanceDTOResponse;
 import com.krachbank.api.dto.ErrorDTOResponse;
 import com.krachbank.api.filters.AccountFilter;
+import com.krachbank.api.filters.BaseFilter;
 import com.krachbank.api.models.Account;
+import com.krachbank.api.models.User;
+import com.krachbank.api.service.AccountBatchService;
 import com.krachbank.api.service.AccountService;
+import com.krachbank.api.service.LedgerService;
 
 @RestController
 @RequestMapping("/accounts")
 public class AccountController implements Controller<Account, AccountDTOResponse> {
     private final AccountService accountService;
+    private final AccountBatchService accountBatchService;
+    private final LedgerService ledgerService;
 
-    public AccountController(AccountService accountService) {
+    public AccountController(AccountService accountService, AccountBatchService accountBatchService,
+            LedgerService ledgerService) {
         this.accountService = accountService;
+        this.accountBatchService = accountBatchService;
+        this.ledgerService = ledgerService;
     }
 
     @PostMapping
@@ -47,12 +65,42 @@ public class AccountController implements Controller<Account, AccountDTOResponse
         }
     }
 
-    @GetMapping("/{iban}")
-    public ResponseEntity<?> getAccountByIban(@PathVariable String iban) {
+    // onboarding in bulk, all accounts are created or none. only the new ibans are sent back
+    @PostMapping("/bulk")
+    public ResponseEntity<?> createAccountsInBulk(@RequestBody List<AccountDTO> accountDTOs) {
         try {
+            List<Account> accounts = new ArrayList<>(accountDTOs.size());
+            for (AccountDTO dto : accountDTOs) {
+                accounts.add(toBulkModel(dto));
+            }
+            return ResponseEntity.ok(accountBatchService.createAccounts(accounts));
+        } catch (IllegalArgumentException e) {
+            ErrorDTOResponse error = new ErrorDTOResponse(e.getMessage(), 400);
+            return ResponseEntity.status(error.getCode()).body(error);
+        } catch (DataIntegrityViolationException e) {
+            // an iban that another request took at the same time, nothing was created and a retry gets new ones
+            ErrorDTOResponse error = new ErrorDTOResponse("IBAN already in use, try again", 409);
+            return ResponseEntity.status(error.getCode()).body(error);
+        }
+    }
 
-            accountService.getAccountByIBAN(iban);
+    private Account toBulkModel(AccountDTO dto) {
+        if (dto == null || dto.getUserId() == null) {
+            throw new IllegalArgumentException("Account owner is required");
+        }
+        User owner = new User();
+        owner.setId(Long.valueOf(dto.getUserId()));
+        Account account = new Account();
+        account.setUser(owner);
+        account.setAccountType(dto.getAccountType());
+        account.setBalance(BigDecimal.valueOf(dto.getBalance()));
+        account.setAbsoluteLimit(BigDecimal.valueOf(dto.getAbsoluteLimit()));
+        return account;
+    }
 
+    @GetMapping("/{iban}")
+    public ResponseEntity<?> getAccountByIban(@PathVariable String iban) {
+        try {
             return ResponseEntity.ok(accountService.toDTO(accountService.getAccountByIBAN(iban).get()));
         } catch (Exception e) {
             ErrorDTOResponse error = new ErrorDTOResponse(e.getMessage(), 500);
@@ -61,6 +109,25 @@ public class AccountController implements Controller<Account, AccountDTOResponse
 
     }
 
+    // balance as it was at the given moment (iso date time), now when it is left out
+    @GetMapping("/{iban}/balance")
+    public ResponseEntity<?> getBalanceAt(@PathVariable String iban,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime at) {
+        try {
+            LocalDateTime moment = at == null ? LocalDateTime.now() : at;
+            Account account = accountService.getAccountReferenceByIBAN(iban);
+            BigDecimal balance = ledgerService.getBalanceAt(account.getId(), moment);
+            return ResponseEntity.ok(new BalanceDTOResponse(account.getIban().toString(), balance, moment));
+        } catch (IllegalArgumentException e) {
+            ErrorDTOResponse error = new ErrorDTOResponse(e.getMessage(), 404);
+            return ResponseEntity.status(error.getCode()).body(error);
+        } catch (RuntimeException e) {
+            // an iban that is not even valid
+            ErrorDTOResponse error = new ErrorDTOResponse(e.getMessage(), 400);
+            return ResponseEntity.status(error.getCode()).body(error);
+        }
+    }
+
     // @GetMapping()
     // @PreAuthorize("hasRole('ROLE_USER')")
     // public ResponseEntity<?> getAccountsForCurrentUser() {
@@ -92,9 +159,21 @@ public class AccountController implements Controller<Account, AccountDTOResponse
 
             
             List<AccountDTOResponse> accountDTOs = new ArrayList<AccountDTOResponse>();
-            Page<Account> accountsPage = accountService.getAccountsByFilter(filter);
-
-            List<Account> accounts = accountsPage.getContent();
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            List<Account> accounts;
+
+            // old clients that still ask for a page number get offset paging
+            if (filter.getPage() != null) {
+                Page<Account> accountsPage = accountService.getAccountsByFilter(filter);
+                accounts = accountsPage.getContent();
+            } else {
+                Window<Account> accountsWindow = accountService.getAccountsByCursor(filter);
+                accounts = accountsWindow.getContent();
+                if (accountsWindow.hasNext()) {
+                    Account last = accounts.get(accounts.size() - 1);
+                    response.header(NEXT_CURSOR_HEADER, BaseFilter.toCursor(last.getCreatedAt(), last.getId()));
+                }
+            }
 
             if (accounts == null || accounts.isEmpty()) {
                 return ResponseEntity.noContent().build();
@@ -102,7 +181,11 @@ public class AccountController implements Controller<Account, AccountDTOResponse
             for (Account account : accounts) {
                 accountDTOs.add(accountService.toDTO(account));
             }
-            return ResponseEntity.ok(accountDTOs);
+            return response.body(accountDTOs);
+        } catch (IllegalArgumentException e) {
+            // a cursor that we did not hand out
+            ErrorDTOResponse error = new ErrorDTOResponse(e.getMessage(), 400);
+            return ResponseEntity.status(error.getCode()).body(error);
         } catch (Exception e) {
             ErrorDTOResponse error = new ErrorDTOResponse(e.getMessage(), 500);
             return ResponseEntity.status(error.getCode()).body(error);
@@ -2,14 +2,21 @@ package com.krachbank.api.controllers;
 
 import com.krachbank.api.dto.*;
 import com.krachbank.api.exceptions.InvalidCredentialsException;
+import com.krachbank.api.exceptions.PasswordHashingBusyException;
+import com.krachbank.api.exceptions.UserAlreadyExistsException;
 import com.krachbank.api.service.AuthenticationService;
+import com.krachbank.api.security.VerifiedToken;
 import com.krachbank.api.service.JwtService;
+import com.krachbank.api.service.TokenRevocationService;
 import com.krachbank.api.service.UserService;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.web.bind.annotation.*;
 
+import io.jsonwebtoken.JwtException;
+
 
 @RestController
 @RequestMapping("/api/auth")
@@ -19,16 +26,19 @@ public class AuthenticationController {
     private final JwtService jwtService;
     private final UserService userService;
     private final AuthenticationService authenticationService; // Inject the service
+    private final TokenRevocationService tokenRevocationService;
 
 
     public AuthenticationController(
             AuthenticationManager authenticationManager,
             JwtService jwtService,
-            UserService userService, AuthenticationService authenticationService) {
+            UserService userService, AuthenticationService authenticationService,
+            TokenRevocationService tokenRevocationService) {
         this.authenticationManager = authenticationManager;
         this.jwtService = jwtService;
         this.userService = userService;
         this.authenticationService = authenticationService;
+        this.tokenRevocationService = tokenRevocationService;
     }
 
     @PostMapping("/register")
@@ -55,6 +65,12 @@ public class AuthenticationController {
             UserDTO createdUser = userService.createUser(userDTO);
 
             return ResponseEntity.status(HttpStatus.CREATED).body("User registered successfully with email: " + createdUser.getEmail());
+        } catch (UserAlreadyExistsException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (PasswordHashingBusyException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body(e.getMessage());
         } catch (RuntimeException e) {
             return ResponseEntity.badRequest().body(e.getMessage());
         }
@@ -70,9 +86,29 @@ public class AuthenticationController {
             // Catch custom exception and return 401 Unauthorized or 403 Forbidden
             // As discussed, 401 is more appropriate for invalid credentials.
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(null); // Or return an error DTO
+        } catch (PasswordHashingBusyException e) {
+            // shed load instead of queueing more bcrypt work
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body(null);
         } catch (Exception e) {
             // Catch any other unexpected exceptions
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
         }
     }
-}
\ No newline at end of file
+
+    // revokes the token in the Authorization header, it is rejected from the next request on
+    @PostMapping("/logout")
+    public ResponseEntity<Void> logout(@RequestHeader(value = "Authorization", required = false) String authHeader) {
+        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        try {
+            VerifiedToken token = jwtService.verify(authHeader.substring(7));
+            tokenRevocationService.revoke(token);
+            return ResponseEntity.noContent().build();
+        } catch (JwtException | IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+    }
+}
@@ -5,6 +5,8 @@ import com.krachbank.api.models.Model;
 
 public interface Controller<M extends Model , D extends DTO> {
 
+    // response header with the cursor of the next page of a listing
+    String NEXT_CURSOR_HEADER = "X-Next-Cursor";
     
     M toModel(D dto);
 } 
@@ -1,49 +1,113 @@
 package com.krachbank.api.controllers;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Window;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.krachbank.api.dto.BatchTransactionDTOResponse;
 import com.krachbank.api.dto.ErrorDTOResponse;
 import com.krachbank.api.dto.TransactionDTOResponse;
+import com.krachbank.api.filters.BaseFilter;
 import com.krachbank.api.filters.TransactionFilter;
 import com.krachbank.api.models.Account;
+import com.krachbank.api.models.IdempotencyKey;
 import com.krachbank.api.models.Transaction;
 import com.krachbank.api.models.User;
 import com.krachbank.api.service.AccountService;
+import com.krachbank.api.service.IdempotencyService;
+import com.krachbank.api.service.TransactionBatchService;
+import com.krachbank.api.service.TransactionExportService;
+import com.krachbank.api.service.TransactionPipelineService;
 import com.krachbank.api.service.TransactionService;
 
+import jakarta.servlet.http.HttpServletRequest;
+
 @RestController
 @RequestMapping("/transactions")
 public class TransactionController implements Controller<Transaction, TransactionDTOResponse> {
 
     private final TransactionService transactionService;
     private final AccountService accountService;
+    private final TransactionBatchService transactionBatchService;
+    private final IdempotencyService idempotencyService;
+    private final TransactionPipelineService transactionPipelineService;
+    private final TransactionExportService transactionExportService;
+    private final Duration exportTimeout;
+    private final Duration pipelineTimeout;
 
-    public TransactionController(TransactionService transactionService, AccountService accountService) {
+    public TransactionController(TransactionService transactionService, AccountService accountService,
+            TransactionBatchService transactionBatchService, IdempotencyService idempotencyService,
+            TransactionPipelineService transactionPipelineService, TransactionExportService transactionExportService,
+            @Value("${application.transactions.export.timeout:PT1H}") Duration exportTimeout,
+            @Value("${application.transactions.pipeline.timeout:PT30S}") Duration pipelineTimeout) {
         this.transactionService = transactionService;
         this.accountService = accountService;
+        this.transactionBatchService = transactionBatchService;
+        this.idempotencyService = idempotencyService;
+        this.transactionPipelineService = transactionPipelineService;
+        this.transactionExportService = transactionExportService;
+        this.exportTimeout = exportTimeout;
+        this.pipelineTimeout = pipelineTimeout;
     }
 
     @GetMapping
     public ResponseEntity<?> getTransactions(@ModelAttribute TransactionFilter filter) {
         try {
+            // old clients that still ask for a page number get offset paging
+            if (filter.getPage() != null) {
+                Page<Transaction> transactionPage = transactionService.getTransactionsByFilter(filter);
+                List<Transaction> transaction =  transactionPage.getContent();
+                if (transaction.isEmpty()) {
+                    return null;
+                }
+
+                return ResponseEntity.ok(transactionService.toDTO(transaction));
+            }
 
-            Page<Transaction> transactionPage = transactionService.getTransactionsByFilter(filter);
-            List<Transaction> transaction =  transactionPage.getContent();
+            Window<Transaction> transactionWindow = transactionService.getTransactionsByCursor(filter);
+            List<Transaction> transaction = transactionWindow.getContent();
             if (transaction.isEmpty()) {
                 return null;
             }
 
-            return ResponseEntity.ok(transactionService.toDTO(transaction));
+            // the cursor for the next page goes in a header so the body stays a plain list
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (transactionWindow.hasNext()) {
+                Transaction last = transaction.get(transaction.size() - 1);
+                response.header(NEXT_CURSOR_HEADER, BaseFilter.toCursor(last.getCreatedAt(), last.getId()));
+            }
+            return response.body(transactionService.toDTO(transaction));
 
+        } catch (IllegalArgumentException e) {
+            // a cursor that we did not hand out
+            ErrorDTOResponse error = new ErrorDTOResponse(e.getMessage(), 400);
+            return ResponseEntity.status(error.getCode()).body(error.getMessage());
         } catch (Exception e) {
             ErrorDTOResponse error = new ErrorDTOResponse(e.getMessage(), 500);
             return ResponseEntity.status(error.getCode()).body(error.getMessage());
@@ -51,17 +115,140 @@ public class TransactionController implements Controller<Transaction, Transactio
 
     }
 
+    // full history for auditors, written to the response while it is read from the database
+    @GetMapping("/export")
+    public ResponseEntity<?> exportTransactions(
+            @RequestParam(defaultValue = TransactionExportService.FORMAT_NDJSON) String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            HttpServletRequest request) {
+        MediaType contentType;
+        if (TransactionExportService.FORMAT_NDJSON.equals(format)) {
+            contentType = MediaType.APPLICATION_NDJSON;
+        } else if (TransactionExportService.FORMAT_CSV.equals(format)) {
+            contentType = new MediaType("text", "csv");
+        } else {
+            ErrorDTOResponse error = new ErrorDTOResponse("Unknown export format, use ndjson or csv", 400);
+            return ResponseEntity.status(error.getCode()).body(error);
+        }
+        if (from != null && to != null && !from.isBefore(to)) {
+            ErrorDTOResponse error = new ErrorDTOResponse("from has to be before to", 400);
+            return ResponseEntity.status(error.getCode()).body(error);
+        }
+
+        // a full history takes longer than other async requests are allowed to, only this one gets more time
+        AsyncWebRequest asyncWebRequest = WebAsyncUtils.getAsyncManager(request).getAsyncWebRequest();
+        if (asyncWebRequest != null) {
+            asyncWebRequest.setTimeout(exportTimeout.toMillis());
+        }
+
+        StreamingResponseBody body = out -> transactionExportService.exportTransactions(from, to, format, out);
+        return ResponseEntity.ok()
+                .contentType(contentType)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"transactions." + format + "\"")
+                .body(body);
+    }
+
     @PostMapping
-    public ResponseEntity<?> createTransaction(TransactionDTOResponse transactionDTO) {
+    public ResponseEntity<?> createTransaction(
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            @AuthenticationPrincipal User principal,
+            TransactionDTOResponse transactionDTO) {
+        // keys are per user, the same key from someone else is a different request
+        Long keyOwner = principal == null ? null : principal.getId();
+        String requestHash = null;
         try {
+            // a retry of a request we already did gets the original response back
+            if (idempotencyKey != null) {
+                if (keyOwner == null) {
+                    ErrorDTOResponse error = new ErrorDTOResponse("Idempotency-Key needs a logged in user", 400);
+                    return ResponseEntity.status(error.getCode()).body(error);
+                }
+                requestHash = idempotencyService.requestHash(transactionDTO);
+                Optional<IdempotencyKey> storedResponse = idempotencyService.getResponse(keyOwner, idempotencyKey);
+                if (storedResponse.isPresent()) {
+                    return toResponse(storedResponse.get(), requestHash);
+                }
+            }
+
             Transaction transaction = toModel(transactionDTO);
-            Optional<Transaction> createdTransaction = transactionService.createTransaction(transaction);
+
+            // keyed requests keep going through the service so the response is stored in the same transaction
+            if (idempotencyKey == null && transactionPipelineService.isEnabled()) {
+                try {
+                    return ResponseEntity.ok(transactionPipelineService.submit(transaction)
+                            .get(pipelineTimeout.toMillis(), TimeUnit.MILLISECONDS));
+                } catch (ExecutionException e) {
+                    throw new Exception(e.getCause().getMessage());
+                } catch (TimeoutException e) {
+                    // it can still be committed later, so the client has to look before trying again
+                    throw new Exception("transfer is still waiting in the pipeline, check the transactions before retrying");
+                }
+            }
+
+            Optional<Transaction> createdTransaction = idempotencyKey == null
+                    ? transactionService.createTransaction(transaction)
+                    : transactionService.createTransaction(transaction, keyOwner, idempotencyKey, requestHash);
             if (createdTransaction.isPresent()) {
                 return ResponseEntity.ok(transactionService.toDTO(createdTransaction.get()));
 
             } else {
                 throw new Exception("transaction did not safe right");
             }
+        } catch (DataIntegrityViolationException e) {
+            // the same key was used by a request that committed first, this transfer is rolled back
+            if (requestHash != null) {
+                Optional<IdempotencyKey> storedResponse = idempotencyService.getResponse(keyOwner, idempotencyKey);
+                if (storedResponse.isPresent()) {
+                    return toResponse(storedResponse.get(), requestHash);
+                }
+            }
+            ErrorDTOResponse error = new ErrorDTOResponse(e.getMessage(), 500);
+            return ResponseEntity.status(error.getCode()).body(error.getMessage());
+        } catch (Exception e) {
+            ErrorDTOResponse error = new ErrorDTOResponse(e.getMessage(), 500);
+            return ResponseEntity.status(error.getCode()).body(error.getMessage());
+        }
+    }
+
+    // only a real retry gets the stored response, a different request with the same key is refused
+    private ResponseEntity<?> toResponse(IdempotencyKey storedResponse, String requestHash) {
+        if (!storedResponse.getRequestHash().equals(requestHash)) {
+            ErrorDTOResponse error = new ErrorDTOResponse(
+                    "Idempotency-Key was already used for a different request", 422);
+            return ResponseEntity.status(error.getCode()).body(error);
+        }
+        return ResponseEntity.status(storedResponse.getStatus())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(storedResponse.getResponseBody());
+    }
+
+    @PostMapping("/batch")
+    public ResponseEntity<?> createTransactions(@RequestBody List<TransactionDTOResponse> transactionDTOs) {
+        try {
+            List<BatchTransactionDTOResponse> results = new ArrayList<>();
+            List<Transaction> transactions = new ArrayList<>();
+            List<Integer> positions = new ArrayList<>();
+
+            // transfers with an unknown iban fail here, the rest still gets applied
+            for (int i = 0; i < transactionDTOs.size(); i++) {
+                results.add(null);
+                try {
+                    transactions.add(toModel(transactionDTOs.get(i)));
+                    positions.add(i);
+                } catch (Exception e) {
+                    results.set(i, new BatchTransactionDTOResponse(i, false, null, e.getMessage()));
+                }
+            }
+
+            List<BatchTransactionDTOResponse> applied = transactionBatchService.createTransactions(transactions);
+            for (int i = 0; i < applied.size(); i++) {
+                BatchTransactionDTOResponse result = applied.get(i);
+                result.setIndex(positions.get(i));
+                results.set(positions.get(i), result);
+            }
+
+            return ResponseEntity.ok(results);
         } catch (Exception e) {
             ErrorDTOResponse error = new ErrorDTOResponse(e.getMessage(), 500);
             return ResponseEntity.status(error.getCode()).body(error.getMessage());
@@ -75,14 +262,15 @@ public class TransactionController implements Controller<Transaction, Transactio
         User initUser = new User();
         initUser.setId(dto.getInitiator());
 
-        Optional<Account> fromAccount = accountService.getAccountByIBAN(dto.getSender());
+        // no balances, the transfer locks both accounts and reads them from the locked rows
+        Account fromAccount = accountService.getAccountReferenceByIBAN(dto.getSender());
 
-        Optional<Account> receivingAccount = accountService.getAccountByIBAN(dto.getReceiver());
+        Account receivingAccount = accountService.getAccountReferenceByIBAN(dto.getReceiver());
 
         Transaction transaction = new Transaction();
         transaction.setAmount(dto.getAmount());
-        transaction.setFromAccount(fromAccount.get());
-        transaction.setToAccount(receivingAccount.get());
+        transaction.setFromAccount(fromAccount);
+        transaction.setToAccount(receivingAccount);
         transaction.setInitiator(initUser);
         transaction.setCreatedAt(dto.getCreatedAt());
         transaction.setDescription(dto.getDescription());
@@ -4,11 +4,13 @@ import com.krachbank.api.dto.AccountDTOResponse;
 import com.krachbank.api.dto.ErrorDTOResponse;
 import com.krachbank.api.dto.UserDTO;
 import com.krachbank.api.dto.UserDTOResponse;
+import com.krachbank.api.exceptions.PasswordHashingBusyException;
 import com.krachbank.api.filters.UserFilter;
 import com.krachbank.api.service.AccountService;
 import com.krachbank.api.service.UserService;
 
 import org.springframework.data.domain.Page;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
@@ -48,6 +50,10 @@ public class UserController implements Controller<User, UserDTOResponse> {
             return ResponseEntity.status(HttpStatus.CREATED).body(createdUser);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
+        } catch (PasswordHashingBusyException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body(null);
         }
     }
 
@@ -1,18 +1,63 @@
 package com.krachbank.api.converters;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Locale;
+
 import org.iban4j.Iban;
 
 import jakarta.persistence.AttributeConverter;
 import jakarta.persistence.Converter;
 
-@Converter(autoApply = true)    
+// the only converter for Iban columns. every iban this app writes went through Iban.valueOf first, so loading
+// a row skips the format and checksum validation and only wraps the string. iban4j has no public factory that
+// does not validate, so this uses its private constructor. a value that is not in the normal form, like one
+// typed in by hand in sql, still goes through Iban.valueOf
+@Converter(autoApply = true)
 public class IbanConverter implements AttributeConverter<Iban, String> {
-     @Override
+
+    // the private Iban(String) constructor, null when a newer iban4j does not have it anymore.
+    // IbanConverterTest fails when that happens, so it does not go back to validating every row unnoticed
+    static final MethodHandle TRUSTED_IBAN = trustedConstructor();
+
+    @Override
     public String convertToDatabaseColumn(Iban iban) {
         return iban != null ? iban.toString() : null;
     }
+
     @Override
     public Iban convertToEntityAttribute(String dbData) {
-        return dbData != null ? Iban.valueOf(dbData) : null;
+        if (dbData == null) {
+            return null;
+        }
+        if (TRUSTED_IBAN == null || !isNormalized(dbData)) {
+            return Iban.valueOf(dbData.replace(" ", "").toUpperCase(Locale.ROOT));
+        }
+        try {
+            return (Iban) TRUSTED_IBAN.invokeExact(dbData);
+        } catch (Throwable e) {
+            throw new IllegalStateException("Could not read IBAN " + dbData, e);
+        }
+    }
+
+    // what Iban.toString gives: only capitals and digits
+    private static boolean isNormalized(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (!(c >= 'A' && c <= 'Z') && !(c >= '0' && c <= '9')) {
+                return false;
+            }
+        }
+        return !value.isEmpty();
+    }
+
+    private static MethodHandle trustedConstructor() {
+        try {
+            return MethodHandles.privateLookupIn(Iban.class, MethodHandles.lookup())
+                    .findConstructor(Iban.class, MethodType.methodType(void.class, String.class));
+        } catch (ReflectiveOperationException | IllegalArgumentException | SecurityException e) {
+            return null;
+        }
     }
 }
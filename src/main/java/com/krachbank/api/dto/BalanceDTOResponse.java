@@ -0,0 +1,19 @@
+package com.krachbank.api.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BalanceDTOResponse implements DTO {
+
+    private String IBAN;
+    private BigDecimal balance;
+    private LocalDateTime at;
+
+}
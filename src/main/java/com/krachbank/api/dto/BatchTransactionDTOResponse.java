@@ -0,0 +1,18 @@
+package com.krachbank.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchTransactionDTOResponse implements DTO {
+
+    // position of the transfer in the request
+    private int index;
+    private boolean success;
+    private TransactionDTOResponse transaction;
+    private String error;
+
+}
@@ -1,11 +1,24 @@
 package com.krachbank.api.filters;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.data.domain.KeysetScrollPosition;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
 
 public class BaseFilter {
+    // newest first, the id breaks ties between rows with the same createdAt
+    public static final Sort KEYSET_SORT = Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("id"));
+
     private Integer limit;
     private Integer page;
+    private String cursor;
 
      public Integer getLimit() {
         return limit;
@@ -22,9 +35,42 @@ public class BaseFilter {
     public void setPage(Integer page) {
         this.page = page;
     }
+
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
+    public int getPageSize() {
+        return (limit != null && limit > 0) ? limit : 10;
+    }
+
     public Pageable toPageAble() {
         int pageNum = (page != null && page > 0) ? page - 1 : 0;
-        int pageSize = (limit != null && limit > 0) ? limit : 10;
-        return PageRequest.of(pageNum, pageSize);
+        return PageRequest.of(pageNum, getPageSize());
+    }
+
+    // the cursor is the (createdAt, id) of the last row of the previous page
+    public KeysetScrollPosition toScrollPosition() {
+        if (cursor == null || cursor.isBlank()) {
+            return ScrollPosition.keyset();
+        }
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+            Map<String, Object> keys = new LinkedHashMap<>();
+            keys.put("createdAt", LocalDateTime.parse(parts[0]));
+            keys.put("id", Long.valueOf(parts[1]));
+            return ScrollPosition.forward(keys);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    public static String toCursor(LocalDateTime createdAt, Long id) {
+        String value = createdAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
     }
 }
@@ -7,25 +7,36 @@ import java.util.stream.Stream;
 
 import org.iban4j.Iban;
 
+import com.krachbank.api.configuration.PooledSequence;
 import com.krachbank.api.converters.IbanConverter;
 
+import jakarta.persistence.Column;
 import jakarta.persistence.Convert;
 import jakarta.persistence.Entity;
-import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.OneToOne;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import jakarta.persistence.Version;
 import lombok.Data;
 
 @Entity
+// the unique constraint is also the index behind findByIban
+@Table(indexes = @Index(name = "idx_account_created_at_id", columnList = "created_at, id"),
+        uniqueConstraints = @UniqueConstraint(name = Account.IBAN_CONSTRAINT, columnNames = "iban"))
 @Data
 public class Account implements Model {
 
+    public static final String IBAN_CONSTRAINT = "uk_account_iban";
+
     @Id
-    @GeneratedValue
+    @PooledSequence("account_seq")
     private Long id;
     @Convert(converter = IbanConverter.class)
+    @Column(length = 34)
     private Iban iban;
     private BigDecimal balance;
     private BigDecimal absoluteLimit;
@@ -45,6 +56,10 @@ public class Account implements Model {
 
     private BigDecimal transactionLimit;
 
+    // every update checks and bumps it, two writers that read the same balance can not both save
+    @Version
+    private long version;
+
 
     public List<Transaction>  getTransactions(){
         List<Transaction> transactions = Stream.concat(this.transactionsFrom.stream(), this.transactionsTo.stream())
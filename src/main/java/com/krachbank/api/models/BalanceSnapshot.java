@@ -0,0 +1,46 @@
+package com.krachbank.api.models;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import org.hibernate.annotations.Immutable;
+
+import com.krachbank.api.configuration.PooledSequence;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// balance of an account with every LedgerEntry up to and including takenAt, written periodically by
+// LedgerServiceJpa so a balance in the past only has to add up the entries since the nearest snapshot
+@Entity
+@Immutable
+@Table(name = "balance_snapshot",
+        uniqueConstraints = @UniqueConstraint(name = "uk_balance_snapshot_account_taken_at",
+                columnNames = { "account_id", "taken_at" }),
+        indexes = @Index(name = "idx_balance_snapshot_taken_at", columnList = "taken_at"))
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BalanceSnapshot implements Model {
+
+    @Id
+    @PooledSequence("balance_snapshot_seq")
+    private Long id;
+
+    @Column(name = "account_id", nullable = false, updatable = false)
+    private Long accountId;
+
+    @Column(name = "taken_at", nullable = false, updatable = false)
+    private LocalDateTime takenAt;
+
+    @Column(nullable = false, updatable = false)
+    private BigDecimal balance;
+
+}
@@ -0,0 +1,40 @@
+package com.krachbank.api.models;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import com.krachbank.api.configuration.PooledSequence;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// running total of what a user spend from his own accounts on a single day
+// this is kept up to date by createTransaction so the daily limit check does not
+// have to go through the whole transaction history
+@Entity
+@Table(name = "daily_spend", uniqueConstraints = @UniqueConstraint(columnNames = { "user_id", "spend_date" }))
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class DailySpend implements Model {
+
+    @Id
+    @PooledSequence("daily_spend_seq")
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "spend_date", nullable = false)
+    private LocalDate spendDate;
+
+    @Column(nullable = false)
+    private BigDecimal total;
+
+}
@@ -0,0 +1,51 @@
+package com.krachbank.api.models;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import org.hibernate.annotations.Immutable;
+
+import com.krachbank.api.configuration.PooledSequence;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// one side of a transfer, a transfer writes a negative entry for the sending account and a positive one
+// for the receiving account, so the entries of a transaction always add up to 0.
+// rows are only ever inserted, the balance of an account at any moment is its entries up to that moment
+// on top of a BalanceSnapshot
+@Entity
+@Immutable
+@Table(name = "ledger_entry", indexes = {
+        @Index(name = "idx_ledger_entry_account_created_at", columnList = "account_id, created_at"),
+        @Index(name = "idx_ledger_entry_created_at", columnList = "created_at") })
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class LedgerEntry implements Model {
+
+    @Id
+    @PooledSequence("ledger_entry_seq")
+    private Long id;
+
+    @Column(name = "account_id", nullable = false, updatable = false)
+    private Long accountId;
+
+    @Column(name = "transaction_id", nullable = false, updatable = false)
+    private Long transactionId;
+
+    // negative for money that left the account
+    @Column(nullable = false, updatable = false)
+    private BigDecimal amount;
+
+    // when the balance changed, not the createdAt of the transaction the client can send along
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+}
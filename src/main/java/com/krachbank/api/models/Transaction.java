@@ -3,19 +3,27 @@ package com.krachbank.api.models;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
+import com.krachbank.api.configuration.PooledSequence;
+
 import jakarta.persistence.Entity;
-import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.ManyToOne;
-import jakarta.persistence.OneToOne;
+import jakarta.persistence.Table;
 import lombok.Data;
 
 @Entity
+// every search filters on one of the accounts or the initiator and pages on created_at
+@Table(indexes = {
+        @Index(name = "idx_transaction_created_at_id", columnList = "created_at, id"),
+        @Index(name = "idx_transaction_from_account_created_at", columnList = "from_account_id, created_at"),
+        @Index(name = "idx_transaction_to_account_created_at", columnList = "to_account_id, created_at"),
+        @Index(name = "idx_transaction_initiator_created_at", columnList = "initiator_id, created_at") })
 @Data
 public class Transaction implements Model{
 
     @Id
-    @GeneratedValue
+    @PooledSequence("transaction_seq")
     private Long id;
 
     private BigDecimal amount;
@@ -23,7 +31,7 @@ public class Transaction implements Model{
 
     private LocalDateTime createdAt;
 
-    @OneToOne
+    @ManyToOne
     private User initiator;
 
     @ManyToOne
@@ -5,13 +5,14 @@ import java.time.LocalDateTime;
 import java.util.Collection;
 import java.util.List;
 
+import com.krachbank.api.configuration.PooledSequence;
 import com.krachbank.api.dto.DTO;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
-import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import jakarta.persistence.Version;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -20,23 +21,29 @@ import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
 @Entity
-@Table(name = "users")
+// named so a violation can be told apart, see KnownUserServiceJpa
+@Table(name = "users", uniqueConstraints = {
+        @UniqueConstraint(name = User.USERNAME_CONSTRAINT, columnNames = "username"),
+        @UniqueConstraint(name = User.EMAIL_CONSTRAINT, columnNames = "email") })
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
 public class User implements Model, UserDetails {
 
+    public static final String USERNAME_CONSTRAINT = "uk_users_username";
+    public static final String EMAIL_CONSTRAINT = "uk_users_email";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @PooledSequence("users_seq")
     private Long id;
 
-    @Column(unique = true, nullable = false)
+    @Column(nullable = false)
     private String username;
 
     @Column(nullable = false)
     private String password;
 
-    @Column(unique = true, nullable = false)
+    @Column(nullable = false)
     private String email;
 
     private String phoneNumber;
@@ -62,6 +69,14 @@ public class User implements Model, UserDetails {
     @Column(name = "is_active", nullable = false)
     private boolean active;
 
+    // goes up by one to revoke every token of this user, only changed by UserRepository.incrementTokenVersion
+    @Column(name = "token_version", nullable = false, updatable = false)
+    private int tokenVersion;
+
+    // optimistic locking, a save of an user that changed since it was loaded fails instead of overwriting
+    @Version
+    private long version;
+
     // --- UserDetails interface methods ---
 
     @Override
@@ -1,5 +1,8 @@
 package com.krachbank.api.repository;
 
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 import org.iban4j.Iban;
@@ -7,15 +10,50 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.krachbank.api.models.Account;
 
+import jakarta.persistence.LockModeType;
+
 @Repository
 public interface AccountRepository extends JpaRepository<Account, Long> , JpaSpecificationExecutor<Account> {
     Optional<Account> findByIban(Iban iban);
+
+    // rows of [id, owner id, account type, absolute limit, transaction limit], no balance and no owner entity
+    @Query("SELECT a.id, a.user.id, a.accountType, a.absoluteLimit, a.transactionLimit FROM Account a WHERE a.iban = :iban")
+    List<Object[]> findMetadataByIban(@Param("iban") Iban iban);
+
+    // the ones of the given ibans that are already in use
+    @Query("SELECT a.iban FROM Account a WHERE a.iban IN :ibans")
+    List<Iban> findExistingIbans(@Param("ibans") Collection<Iban> ibans);
     Page<Account> findByUserId(Long userId, Pageable pageable);
-    
 
-    
+    // SELECT ... FOR UPDATE, the row stays locked until the surrounding transaction ends
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT a FROM Account a WHERE a.id = :id")
+    Optional<Account> findByIdForUpdate(@Param("id") Long id);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT a FROM Account a WHERE a.id IN :ids ORDER BY a.id")
+    List<Account> findAllByIdForUpdate(@Param("ids") Collection<Long> ids);
+
+    // one statement that only matches while the balance stays at or above the absolute limit,
+    // 0 rows means not enough money. bumps the version so an entity loaded before can not save its old balance
+    @Modifying
+    @Query("UPDATE Account a SET a.balance = a.balance - :amount, a.version = a.version + 1 "
+            + "WHERE a.id = :id AND a.balance - :amount >= a.absoluteLimit AND a.transactionLimit >= :amount")
+    int debit(@Param("id") Long id, @Param("amount") BigDecimal amount);
+
+    @Modifying
+    @Query("UPDATE Account a SET a.balance = a.balance + :amount, a.version = a.version + 1 WHERE a.id = :id")
+    int credit(@Param("id") Long id, @Param("amount") BigDecimal amount);
+
+    @Query("SELECT a.user.dailyLimit FROM Account a WHERE a.id = :id")
+    Optional<BigDecimal> findOwnerDailyLimit(@Param("id") Long id);
+
 } 
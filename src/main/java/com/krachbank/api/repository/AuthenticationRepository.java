@@ -3,6 +3,8 @@ package com.krachbank.api.repository;
 
 import com.krachbank.api.models.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import java.util.Optional;
 
 public interface AuthenticationRepository extends JpaRepository<User, Long> {
@@ -10,4 +12,9 @@ public interface AuthenticationRepository extends JpaRepository<User, Long> {
     Optional<User> findByUsername(String username);
 
     Optional<User> findByEmail(String email);
+
+    // bumps the version, an user loaded before this can not write the old hash back
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE User u SET u.password = :password, u.version = u.version + 1 WHERE u.username = :username")
+    int updatePassword(String username, String password);
 }
\ No newline at end of file
@@ -0,0 +1,29 @@
+package com.krachbank.api.repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import com.krachbank.api.models.BalanceSnapshot;
+
+@Repository
+public interface BalanceSnapshotRepository extends JpaRepository<BalanceSnapshot, Long> {
+
+    // the nearest snapshot at or before the moment, and after it for moments before the first one
+    Optional<BalanceSnapshot> findFirstByAccountIdAndTakenAtLessThanEqualOrderByTakenAtDesc(Long accountId,
+            LocalDateTime takenAt);
+
+    // same with a lower bound, not every database stops at the first index entry of an open range
+    Optional<BalanceSnapshot> findFirstByAccountIdAndTakenAtBetweenOrderByTakenAtDesc(Long accountId,
+            LocalDateTime from, LocalDateTime takenAt);
+
+    Optional<BalanceSnapshot> findFirstByAccountIdAndTakenAtGreaterThanOrderByTakenAtAsc(Long accountId,
+            LocalDateTime takenAt);
+
+    @Query("SELECT MAX(s.takenAt) FROM BalanceSnapshot s")
+    Optional<LocalDateTime> findLastTakenAt();
+
+}
@@ -0,0 +1,43 @@
+package com.krachbank.api.repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.krachbank.api.models.DailySpend;
+
+import jakarta.persistence.LockModeType;
+
+@Repository
+public interface DailySpendRepository extends JpaRepository<DailySpend, Long> {
+
+    Optional<DailySpend> findByUserIdAndSpendDate(Long userId, LocalDate spendDate);
+
+    // SELECT ... FOR UPDATE, no other transfer can add to the counter until the surrounding transaction ends
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT d FROM DailySpend d WHERE d.userId = :userId AND d.spendDate = :spendDate")
+    Optional<DailySpend> findByUserIdAndSpendDateForUpdate(@Param("userId") Long userId,
+            @Param("spendDate") LocalDate spendDate);
+
+    // adds the amount in the database itself so two transfers on the same day can not overwrite each other
+    @Modifying
+    @Query("UPDATE DailySpend d SET d.total = d.total + :amount WHERE d.userId = :userId AND d.spendDate = :spendDate")
+    int addToTotal(@Param("userId") Long userId, @Param("spendDate") LocalDate spendDate,
+            @Param("amount") BigDecimal amount);
+
+    // same, but only when the new total stays below the limit. 0 rows when there is no counter yet or the
+    // limit would be reached, the check and the update can not be split by another transfer
+    @Modifying
+    @Query("UPDATE DailySpend d SET d.total = d.total + :amount WHERE d.userId = :userId AND d.spendDate = :spendDate "
+            + "AND d.total + :amount < :limit")
+    int addToTotalWithinLimit(@Param("userId") Long userId, @Param("spendDate") LocalDate spendDate,
+            @Param("amount") BigDecimal amount, @Param("limit") BigDecimal limit);
+
+}
@@ -0,0 +1,33 @@
+package com.krachbank.api.repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.krachbank.api.models.LedgerEntry;
+
+// insert only, there are no update or delete queries on purpose
+@Repository
+public interface LedgerEntryRepository extends JpaRepository<LedgerEntry, Long> {
+
+    // entries of one account after `after` up to and including `upTo`, walks idx_ledger_entry_account_created_at
+    @Query("SELECT COALESCE(SUM(e.amount), 0) FROM LedgerEntry e "
+            + "WHERE e.accountId = :accountId AND e.createdAt > :after AND e.createdAt <= :upTo")
+    BigDecimal sumAmount(@Param("accountId") Long accountId, @Param("after") LocalDateTime after,
+            @Param("upTo") LocalDateTime upTo);
+
+    @Query("SELECT DISTINCT e.accountId FROM LedgerEntry e WHERE e.createdAt > :after AND e.createdAt <= :upTo")
+    List<Long> findAccountIdsBetween(@Param("after") LocalDateTime after, @Param("upTo") LocalDateTime upTo);
+
+    // rows of [account id, balance at upTo], the live balance minus everything that happened after upTo
+    @Query("SELECT a.id, a.balance - COALESCE((SELECT SUM(e.amount) FROM LedgerEntry e "
+            + "WHERE e.accountId = a.id AND e.createdAt > :upTo), 0) FROM Account a WHERE a.id IN :ids")
+    List<Object[]> findBalancesAt(@Param("ids") Collection<Long> ids, @Param("upTo") LocalDateTime upTo);
+
+}
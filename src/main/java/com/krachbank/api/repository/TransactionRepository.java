@@ -1,17 +1,56 @@
 package com.krachbank.api.repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import com.krachbank.api.models.Transaction;
 
+import jakarta.persistence.QueryHint;
+
 @Repository
 public interface TransactionRepository extends JpaRepository<Transaction, Long>, JpaSpecificationExecutor<Transaction> {
 
+    // everything toDTO touches, loaded with the page instead of one select per row
+    @Override
+    @EntityGraph(attributePaths = { "initiator", "fromAccount", "toAccount" })
+    Page<Transaction> findAll(Specification<Transaction> spec, Pageable pageable);
+
+    @Override
+    @EntityGraph(attributePaths = { "initiator", "fromAccount", "toAccount" })
+    Page<Transaction> findAll(Pageable pageable);
+
     List<Transaction> findByInitiatorIdOrderByCreatedAtAsc(Long initiatorId);
 
+    // rows of [userId, day, total] for every day a user spend money from his own accounts.
+    // createdAt is set by the server when the transfer is made, the same day the live counter uses
+    @Query("SELECT t.initiator.id, CAST(t.createdAt AS LocalDate), SUM(t.amount) FROM Transaction t "
+            + "WHERE t.initiator.id = t.fromAccount.user.id "
+            + "GROUP BY t.initiator.id, CAST(t.createdAt AS LocalDate)")
+    List<Object[]> sumAmountPerInitiatorPerDay();
+
+    int EXPORT_FETCH_SIZE = 1000;
+
+    // oldest first, the rows are read from the database in chunks of EXPORT_FETCH_SIZE while the stream is consumed
+    // has to be called inside a transaction and the stream has to be closed
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + EXPORT_FETCH_SIZE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "false") })
+    @Query("SELECT t FROM Transaction t JOIN FETCH t.fromAccount JOIN FETCH t.toAccount LEFT JOIN FETCH t.initiator "
+            + "WHERE (:from IS NULL OR t.createdAt >= :from) AND (:to IS NULL OR t.createdAt < :to) "
+            + "ORDER BY t.createdAt, t.id")
+    Stream<Transaction> streamForExport(LocalDateTime from, LocalDateTime to);
 
 }
@@ -0,0 +1,66 @@
+package com.krachbank.api.security;
+
+import java.time.Duration;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+// bcrypt with the cost picked for the hardware it runs on. every stored hash with a lower cost is rehashed by
+// DaoAuthenticationProvider after the next successful login. a higher cost is left alone, otherwise nodes that
+// calibrated to different costs would keep rehashing the same passwords back and forth
+public class CalibratedBCryptPasswordEncoder extends BCryptPasswordEncoder {
+
+    private static final Pattern BCRYPT_COST = Pattern.compile("\\A\\$2[aby]?\\$(\\d\\d)\\$");
+    private static final String CALIBRATION_PASSWORD = "calibration-password";
+
+    private final int cost;
+
+    public CalibratedBCryptPasswordEncoder(int cost) {
+        super(cost);
+        this.cost = cost;
+    }
+
+    public int getCost() {
+        return cost;
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        if (encodedPassword == null) {
+            return false;
+        }
+        Matcher matcher = BCRYPT_COST.matcher(encodedPassword);
+        // not a bcrypt hash, matches already said no to it
+        if (!matcher.find()) {
+            return false;
+        }
+        return Integer.parseInt(matcher.group(1)) < cost;
+    }
+
+    // the highest cost of which one hash fits in the budget on this machine, never below minCost.
+    // every cost step doubles the time, so this stops at the first one that would not fit
+    public static int calibrate(Duration budget, int minCost, int maxCost) {
+        if (minCost > maxCost) {
+            throw new IllegalArgumentException("BCrypt min cost can not be above max cost");
+        }
+        long budgetNanos = budget.toNanos();
+        // the first hash pays for class loading and the jit
+        new BCryptPasswordEncoder(minCost).encode(CALIBRATION_PASSWORD);
+
+        int chosen = minCost;
+        for (int cost = minCost; cost <= maxCost; cost++) {
+            long start = System.nanoTime();
+            new BCryptPasswordEncoder(cost).encode(CALIBRATION_PASSWORD);
+            long elapsed = System.nanoTime() - start;
+            if (elapsed > budgetNanos) {
+                break;
+            }
+            chosen = cost;
+            if (elapsed * 2 > budgetNanos) {
+                break;
+            }
+        }
+        return chosen;
+    }
+}
@@ -2,10 +2,14 @@
 package com.krachbank.api.security;
 
 import com.krachbank.api.service.JwtService;
+import com.krachbank.api.service.TokenRevocationService;
+import com.krachbank.api.service.TokenVersionService;
+import io.jsonwebtoken.JwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.lang.NonNull; // Keep this for clarity and nullable analysis
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -23,10 +27,19 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtService jwtService;
     private final UserDetailsService userDetailsService; // Your UserDetailsServiceImpl
+    private final TokenVersionService tokenVersionService;
+    private final TokenRevocationService tokenRevocationService;
+    // build the principal from the token claims instead of loading the user
+    private final boolean claimsOnly;
 
-    public JwtAuthenticationFilter(JwtService jwtService, UserDetailsService userDetailsService) {
+    public JwtAuthenticationFilter(JwtService jwtService, UserDetailsService userDetailsService,
+            TokenVersionService tokenVersionService, TokenRevocationService tokenRevocationService,
+            @Value("${application.security.jwt.claims-only:false}") boolean claimsOnly) {
         this.jwtService = jwtService;
         this.userDetailsService = userDetailsService;
+        this.tokenVersionService = tokenVersionService;
+        this.tokenRevocationService = tokenRevocationService;
+        this.claimsOnly = claimsOnly;
     }
 
     @Override
@@ -37,7 +50,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     ) throws ServletException, IOException { // <--- The correct throws clause is essential
         final String authHeader = request.getHeader("Authorization");
         final String jwt;
-        final String username;
+        final VerifiedToken token;
 
         // If no Authorization header or it doesn't start with "Bearer", proceed with the filter chain
         if (authHeader == null || !authHeader.startsWith("Bearer ")) {
@@ -46,20 +59,44 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         }
 
         jwt = authHeader.substring(7); // Extract the JWT token (after "Bearer ")
-        username = jwtService.extractUsername(jwt); // Extract username from token
+        try {
+            // the token is parsed and checked once, everything below works on the result
+            token = jwtService.verify(jwt);
+        } catch (JwtException | IllegalArgumentException e) {
+            // bad signature, expired or not a jwt at all: continue without authentication
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        // logged out or revoked: same as no token
+        if (tokenRevocationService.isRevoked(token)) {
+            filterChain.doFilter(request, response);
+            return;
+        }
 
         // If username is found and no authentication is currently set in the SecurityContext
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            // Load UserDetails for the extracted username
-            UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
+        if (token.username() != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+            final UserDetails userDetails;
+            final boolean valid;
+            if (claimsOnly && token.hasUserClaims()) {
+                // no database: the token says who it is, the in memory version map says if it was revoked
+                userDetails = token.toPrincipal();
+                valid = jwtService.isTokenValid(token, userDetails) && token.isActive()
+                        && token.tokenVersion() == tokenVersionService.currentVersion(token.userId());
+            } else {
+                // Load UserDetails for the extracted username
+                userDetails = this.userDetailsService.loadUserByUsername(token.username());
+                // Validate the token against the loaded UserDetails, a deactivated or locked user is out right away
+                valid = jwtService.isTokenValid(token, userDetails) && userDetails.isEnabled()
+                        && userDetails.isAccountNonLocked();
+            }
 
-            // Validate the token against the loaded UserDetails
-            if (jwtService.isTokenValid(jwt, userDetails)) {
+            if (valid) {
                 // If token is valid, create an authentication token
                 UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
                         userDetails,
                         null, // Credentials are set to null because the token itself is the credential
-                        userDetails.getAuthorities() // Get user roles/authorities
+                        claimsOnly && token.hasUserClaims() ? token.authorities() : userDetails.getAuthorities()
                 );
                 // Set authentication details from the request
                 authToken.setDetails(
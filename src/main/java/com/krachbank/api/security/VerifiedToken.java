@@ -0,0 +1,70 @@
+package com.krachbank.api.security;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import com.krachbank.api.models.User;
+
+import io.jsonwebtoken.Claims;
+
+// the result of checking a jwt once: the signature is valid and it is not expired
+public record VerifiedToken(String username, Date issuedAt, Date expiration, Claims claims) {
+
+    // claims JwtService.generateToken puts in, enough to authenticate without loading the user
+    public static final String USER_ID = "uid";
+    public static final String AUTHORITIES = "roles";
+    public static final String ACTIVE = "active";
+    public static final String TOKEN_VERSION = "ver";
+
+    public static VerifiedToken of(Claims claims) {
+        return new VerifiedToken(claims.getSubject(), claims.getIssuedAt(), claims.getExpiration(), claims);
+    }
+
+    public boolean isExpired() {
+        return expiration != null && expiration.before(new Date());
+    }
+
+    // the jti, what a single token is revoked by
+    public String tokenId() {
+        return claims.getId();
+    }
+
+    // tokens from before the user claims existed do not have them
+    public boolean hasUserClaims() {
+        return userId() != null && tokenVersion() != null && claims.get(ACTIVE) instanceof Boolean
+                && claims.get(AUTHORITIES) instanceof List;
+    }
+
+    public Long userId() {
+        return claims.get(USER_ID) instanceof Number id ? id.longValue() : null;
+    }
+
+    public Integer tokenVersion() {
+        return claims.get(TOKEN_VERSION) instanceof Number version ? version.intValue() : null;
+    }
+
+    public boolean isActive() {
+        return Boolean.TRUE.equals(claims.get(ACTIVE));
+    }
+
+    public Collection<? extends GrantedAuthority> authorities() {
+        if (!(claims.get(AUTHORITIES) instanceof List<?> roles)) {
+            return List.of();
+        }
+        return roles.stream().map(role -> new SimpleGrantedAuthority(String.valueOf(role))).toList();
+    }
+
+    // a user with only what is in the token, not loaded from the database
+    public User toPrincipal() {
+        User user = new User();
+        user.setId(userId());
+        user.setUsername(username);
+        user.setActive(isActive());
+        user.setTokenVersion(tokenVersion());
+        return user;
+    }
+}
@@ -13,6 +13,7 @@ import com.krachbank.api.models.User;
 import com.krachbank.api.repository.AccountRepository;
 import com.krachbank.api.repository.TransactionRepository;
 import com.krachbank.api.repository.UserRepository;
+import com.krachbank.api.service.TransactionService;
 
 import jakarta.annotation.PostConstruct;
 
@@ -22,12 +23,14 @@ public class DatabaseSeeder {
     private final UserRepository userRepository;
     private final AccountRepository accountRepository;
     private final TransactionRepository transactionRepository;
+    private final TransactionService transactionService;
 
     public DatabaseSeeder(UserRepository userRepository, AccountRepository accountRepository,
-                          TransactionRepository transactionRepository) {
+                          TransactionRepository transactionRepository, TransactionService transactionService) {
         this.userRepository = userRepository;
         this.accountRepository = accountRepository;
         this.transactionRepository = transactionRepository;
+        this.transactionService = transactionService;
     }
 
     @PostConstruct
@@ -103,5 +106,8 @@ public class DatabaseSeeder {
         // Assuming you have a TransactionRepository and it's injected similarly
         transactionRepository.save(transaction);
 
+        // the seeded transaction skips createTransaction so the daily counters have to be rebuild
+        transactionService.rebuildDailySpend();
+
     }
 }
\ No newline at end of file
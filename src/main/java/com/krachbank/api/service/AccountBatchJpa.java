@@ -0,0 +1,155 @@
+package com.krachbank.api.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.iban4j.Iban;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.krachbank.api.configuration.IBANGenerator;
+import com.krachbank.api.models.Account;
+import com.krachbank.api.models.User;
+import com.krachbank.api.repository.AccountRepository;
+import com.krachbank.api.repository.UserRepository;
+
+import jakarta.persistence.EntityManager;
+
+// onboarding of many accounts at once in one transaction. the inserts go out in jdbc batches and the
+// persistence context is flushed and cleared every flush-size accounts, so hibernate never keeps more
+// than one chunk of managed entities and their snapshots, also for a request of 100k accounts
+@Service
+public class AccountBatchJpa implements AccountBatchService {
+
+    private final UserRepository userRepository;
+    private final AccountRepository accountRepository;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final int flushSize;
+    private final int maxSize;
+    private final BigDecimal transactionLimit;
+
+    public AccountBatchJpa(UserRepository userRepository, AccountRepository accountRepository,
+            EntityManager entityManager,
+            PlatformTransactionManager transactionManager,
+            @Value("${application.accounts.bulk.flush-size:1000}") int flushSize,
+            @Value("${application.accounts.bulk.max-size:100000}") int maxSize,
+            @Value("${application.accounts.bulk.transaction-limit:1000}") BigDecimal transactionLimit) {
+        this.userRepository = userRepository;
+        this.accountRepository = accountRepository;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.flushSize = flushSize;
+        this.maxSize = maxSize;
+        this.transactionLimit = transactionLimit;
+    }
+
+    @Override
+    public List<String> createAccounts(List<Account> accounts) {
+        if (accounts == null || accounts.isEmpty()) {
+            throw new IllegalArgumentException("No accounts provided");
+        }
+        if (accounts.size() > maxSize) {
+            throw new IllegalArgumentException("At most " + maxSize + " accounts per request");
+        }
+
+        Set<Long> userIds = new HashSet<>();
+        for (Account account : accounts) {
+            validateAccount(account);
+            userIds.add(account.getUser().getId());
+        }
+        // one query for all owners instead of a foreign key error halfway through
+        userIds.removeAll(userRepository.findExistingIds(userIds));
+        if (!userIds.isEmpty()) {
+            throw new IllegalArgumentException("User not found with ID: " + userIds.iterator().next());
+        }
+
+        return transactionTemplate.execute(status -> insert(accounts));
+    }
+
+    private List<String> insert(List<Account> accounts) {
+        List<String> ibans = new ArrayList<>(accounts.size());
+        // the generator is random, a big request would otherwise hand out the same iban twice
+        Set<Iban> used = new HashSet<>(accounts.size() * 2);
+        LocalDateTime now = LocalDateTime.now();
+
+        for (int start = 0; start < accounts.size(); start += flushSize) {
+            List<Account> chunk = accounts.subList(start, Math.min(start + flushSize, accounts.size()));
+            List<Iban> chunkIbans = newIbans(chunk.size(), used);
+            for (int i = 0; i < chunk.size(); i++) {
+                Account account = chunk.get(i);
+                account.setIban(chunkIbans.get(i));
+                if (account.getCreatedAt() == null) {
+                    account.setCreatedAt(now);
+                }
+                // only the id is known, a reference saves a select per owner
+                account.setUser(entityManager.getReference(User.class, account.getUser().getId()));
+                entityManager.persist(account);
+                ibans.add(account.getIban().toString());
+            }
+            entityManager.flush();
+            entityManager.clear();
+        }
+        return ibans;
+    }
+
+    // ibans that are new in this request and not in the database yet, one query per chunk instead of one per
+    // account. an iban taken by another request after the check still fails on the unique index
+    private List<Iban> newIbans(int count, Set<Iban> used) {
+        List<Iban> ibans = new ArrayList<>(count);
+        List<Integer> open = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ibans.add(null);
+            open.add(i);
+        }
+        while (!open.isEmpty()) {
+            List<Iban> candidates = new ArrayList<>(open.size());
+            for (int index : open) {
+                Iban iban = IBANGenerator.generateIBAN();
+                while (!used.add(iban)) {
+                    iban = IBANGenerator.generateIBAN();
+                }
+                ibans.set(index, iban);
+                candidates.add(iban);
+            }
+            // taken ones stay in used, so they are not generated again
+            Set<Iban> taken = new HashSet<>(accountRepository.findExistingIbans(candidates));
+            List<Integer> collided = new ArrayList<>();
+            for (int index : open) {
+                if (taken.contains(ibans.get(index))) {
+                    collided.add(index);
+                }
+            }
+            open = collided;
+        }
+        return ibans;
+    }
+
+    private void validateAccount(Account account) {
+        if (account == null) {
+            throw new IllegalArgumentException("Account cannot be null");
+        }
+        if (account.getUser() == null || account.getUser().getId() == null) {
+            throw new IllegalArgumentException("Account owner is required");
+        }
+        if (account.getAccountType() == null) {
+            throw new IllegalArgumentException("Account type is required");
+        }
+        if (account.getBalance() == null) {
+            account.setBalance(BigDecimal.ZERO);
+        }
+        if (account.getAbsoluteLimit() == null) {
+            account.setAbsoluteLimit(BigDecimal.ZERO);
+        }
+        // transfers compare against it, an account without one could not send money
+        if (account.getTransactionLimit() == null) {
+            account.setTransactionLimit(transactionLimit);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.krachbank.api.service;
+
+import java.util.List;
+
+import com.krachbank.api.models.Account;
+
+public interface AccountBatchService {
+
+    // creates all accounts or none, gives every account a new iban and returns them in the same order
+    public List<String> createAccounts(List<Account> accounts);
+}
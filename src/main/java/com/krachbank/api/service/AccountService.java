@@ -1,9 +1,11 @@
 package com.krachbank.api.service;
 
+import java.math.BigDecimal;
 import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Window;
 
 import com.krachbank.api.dto.AccountDTOResponse;
 import com.krachbank.api.filters.AccountFilter;
@@ -15,12 +17,27 @@ import jakarta.transaction.Transactional;
 public interface AccountService extends Service<AccountDTOResponse, Account> {
     public Page<Account> getAccountsByFilter(AccountFilter filter);
 
+    // keyset pagination on (createdAt, id), no offset scan and no count query
+    public Window<Account> getAccountsByCursor(AccountFilter filter);
+
     public Optional<Account> getAccountById(Long id) throws Exception;
 
     public Account createAccount(Account account);
 
     public List<Account> createAccounts(List<Account> accounts);
 
+    public Account lockAccount(Account account);
+
+    public Account readAccount(Account account);
+
+    // single statement balance changes, no read and no lock before them. false when the debit
+    // would take the balance below the absolute limit
+    public boolean debit(Account account, BigDecimal amount);
+
+    public void credit(Account account, BigDecimal amount);
+
+    public BigDecimal getOwnerDailyLimit(Account account);
+
     @Transactional
     public Optional<Account> updateAccount(Long id, Account account) throws Exception;
 
@@ -28,6 +45,10 @@ public interface AccountService extends Service<AccountDTOResponse, Account> {
 
     public Optional<Account> getAccountByIBAN(String iban);
 
+    // cached id, owner id, type and limits of the account without a balance, for code that locks
+    // the account by id before it looks at the balance
+    public Account getAccountReferenceByIBAN(String iban);
+
     public Page<Account> getAccountsByUserId(Long userId,BaseFilter filter);
 
 
@@ -1,22 +1,37 @@
 package com.krachbank.api.service;
 
+import java.math.BigDecimal;
 import java.security.InvalidParameterException;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
 
 import org.iban4j.Iban;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.KeysetScrollPosition;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.krachbank.api.dto.AccountDTOResponse;
 import com.krachbank.api.filters.AccountFilter;
 import com.krachbank.api.filters.BaseFilter;
 import com.krachbank.api.models.Account;
+import com.krachbank.api.models.AccountType;
+import com.krachbank.api.models.User;
 import com.krachbank.api.repository.AccountRepository;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import jakarta.persistence.criteria.Predicate;
 import jakarta.transaction.Transactional;
 
@@ -25,8 +40,23 @@ public class AccountServiceJpa implements AccountService {
 
     private final AccountRepository accountRepository;
 
-    public AccountServiceJpa(AccountRepository accountRepository) {
+    // what a transfer needs to know about an account before it locks it, by normalized iban.
+    // there is no balance in it. the debit checks the balance, absolute and transfer limit in the row itself,
+    // owner and type are taken from here. updateAccount and removeAccount evict, so those are only up to the
+    // ttl stale when the account is changed without this service
+    private final Cache<String, AccountMetadata> metadata;
+
+    public AccountServiceJpa(AccountRepository accountRepository,
+            @Value("${application.accounts.metadata-cache.ttl:PT5M}") Duration timeToLive,
+            @Value("${application.accounts.metadata-cache.size:10000}") long cacheSize,
+            MeterRegistry meterRegistry) {
         this.accountRepository = accountRepository;
+        this.metadata = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(timeToLive)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, metadata, "accounts.metadata");
     }
 
     @Override
@@ -40,6 +70,19 @@ public class AccountServiceJpa implements AccountService {
         return accountPage;
     }
 
+    @Override
+    public Window<Account> getAccountsByCursor(AccountFilter filter) {
+        if (filter == null) {
+            throw new IllegalArgumentException("Filter cannot be null");
+        }
+        // decode the cursor first so a bad cursor is not wrapped in a data access exception
+        KeysetScrollPosition position = filter.toScrollPosition();
+        return accountRepository.findBy(makeAccountFilterSpecification(filter), query -> query
+                .sortBy(BaseFilter.KEYSET_SORT)
+                .limit(filter.getPageSize())
+                .scroll(position));
+    }
+
     @Override
     public Optional<Account> getAccountById(Long id) throws Exception {
 
@@ -64,6 +107,9 @@ public class AccountServiceJpa implements AccountService {
         // Validate accounts
         for (Account account : accounts) {
             validateAccount(account);
+            if (account.getCreatedAt() == null) {
+                account.setCreatedAt(LocalDateTime.now());
+            }
         }
         return accountRepository.saveAll(accounts);
     }
@@ -103,6 +149,54 @@ public class AccountServiceJpa implements AccountService {
         return accountRepository.save(account);
     }
 
+    // has to be called inside a transaction, the lock is released on commit or rollback
+    @Override
+    public Account lockAccount(Account account) {
+        if (account == null || account.getId() == null) {
+            throw new IllegalArgumentException("Account ID is required");
+        }
+        return accountRepository.findByIdForUpdate(account.getId())
+                .orElseThrow(() -> new IllegalArgumentException("Account does not exist"));
+    }
+
+    // no lock, a change by someone else before the commit fails on the @Version check instead
+    @Override
+    public Account readAccount(Account account) {
+        if (account == null || account.getId() == null) {
+            throw new IllegalArgumentException("Account ID is required");
+        }
+        return accountRepository.findById(account.getId())
+                .orElseThrow(() -> new IllegalArgumentException("Account does not exist"));
+    }
+
+    // has to be called inside a transaction like lockAccount
+    @Override
+    public boolean debit(Account account, BigDecimal amount) {
+        if (account == null || account.getId() == null) {
+            throw new IllegalArgumentException("Account ID is required");
+        }
+        return accountRepository.debit(account.getId(), amount) == 1;
+    }
+
+    @Override
+    public void credit(Account account, BigDecimal amount) {
+        if (account == null || account.getId() == null) {
+            throw new IllegalArgumentException("Account ID is required");
+        }
+        if (accountRepository.credit(account.getId(), amount) == 0) {
+            throw new IllegalArgumentException("Account does not exist");
+        }
+    }
+
+    @Override
+    public BigDecimal getOwnerDailyLimit(Account account) {
+        if (account == null || account.getId() == null) {
+            throw new IllegalArgumentException("Account ID is required");
+        }
+        return accountRepository.findOwnerDailyLimit(account.getId())
+                .orElseThrow(() -> new IllegalArgumentException("Account does not exist"));
+    }
+
     @Override
     @Transactional
     public Optional<Account> updateAccount(Long id, Account account) throws Exception {
@@ -115,7 +209,7 @@ public class AccountServiceJpa implements AccountService {
                 throw new InvalidParameterException("invalid account");
             }
 
-            if (accountRepository.existsById(id)) {
+            if (!accountRepository.existsById(id)) {
                 throw new InvalidParameterException("the account for this id does not exist");
             }
 
@@ -123,6 +217,7 @@ public class AccountServiceJpa implements AccountService {
             account.setId(id);
 
             accountRepository.save(account);
+            evict(id);
 
             Optional<Account> updatedAccount = getAccountById(id);
 
@@ -145,6 +240,7 @@ public class AccountServiceJpa implements AccountService {
             throw new IllegalArgumentException("Account does not exist");
         }
         accountRepository.delete(account);
+        evict(account.getId());
     }
 
     // TODO: maybe make an parent base Service class that has generalised these
@@ -189,6 +285,79 @@ public class AccountServiceJpa implements AccountService {
         return account;
     }
 
+    @Override
+    public Account getAccountReferenceByIBAN(String iban) {
+        if (iban == null) {
+            throw new IllegalArgumentException("IBAN cannot be null");
+        }
+        // unknown ibans are not cached
+        AccountMetadata cached = metadata.get(normalize(iban), this::loadMetadata);
+        if (cached == null) {
+            throw new IllegalArgumentException("Account with this IBAN does not exist");
+        }
+        return cached.toAccount();
+    }
+
+    private AccountMetadata loadMetadata(String iban) {
+        Iban ibanObj = Iban.valueOf(iban);
+        List<Object[]> rows = accountRepository.findMetadataByIban(ibanObj);
+        if (rows.isEmpty()) {
+            return null;
+        }
+        Object[] row = rows.get(0);
+        return new AccountMetadata((Long) row[0], ibanObj, (Long) row[1], (AccountType) row[2],
+                (BigDecimal) row[3], (BigDecimal) row[4]);
+    }
+
+    // the iban of an account can be changed by an update, so drop every key that points to it.
+    // again after the commit, a lookup in between could still read the old row
+    void evict(Long id) {
+        if (id == null) {
+            return;
+        }
+        metadata.asMap().values().removeIf(cached -> id.equals(cached.id()));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    metadata.asMap().values().removeIf(cached -> id.equals(cached.id()));
+                }
+            });
+        }
+    }
+
+    // the way people type them: spaces in groups of four and lower case letters
+    static String normalize(String iban) {
+        StringBuilder normalized = new StringBuilder(iban.length());
+        for (int i = 0; i < iban.length(); i++) {
+            char c = iban.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                normalized.append(c);
+            }
+        }
+        return normalized.toString().toUpperCase(Locale.ROOT);
+    }
+
+    private record AccountMetadata(Long id, Iban iban, Long ownerId, AccountType accountType,
+            BigDecimal absoluteLimit, BigDecimal transactionLimit) {
+
+        // a new detached account for every caller, so changing it does not change the cache
+        Account toAccount() {
+            Account account = new Account();
+            account.setId(id);
+            account.setIban(iban);
+            account.setAccountType(accountType);
+            account.setAbsoluteLimit(absoluteLimit);
+            account.setTransactionLimit(transactionLimit);
+            if (ownerId != null) {
+                User owner = new User();
+                owner.setId(ownerId);
+                account.setUser(owner);
+            }
+            return account;
+        }
+    }
+
     // add pagination filter to this method
     @Override
     public Page<Account> getAccountsByUserId(Long userId, BaseFilter filter) {
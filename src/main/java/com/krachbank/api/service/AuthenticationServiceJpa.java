@@ -9,8 +9,10 @@ import com.krachbank.api.models.User;
 import com.krachbank.api.repository.AuthenticationRepository;
 import com.krachbank.api.exceptions.UserAlreadyExistsException;
 import com.krachbank.api.exceptions.InvalidCredentialsException;
+import com.krachbank.api.exceptions.PasswordHashingBusyException;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.authentication.AuthenticationManager; // For login
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken; // For login
 import org.springframework.security.core.userdetails.UserDetails;
@@ -29,27 +31,26 @@ public class AuthenticationServiceJpa implements AuthenticationService {
     private final PasswordEncoder passwordEncoder;
     private final JwtService jwtService; // Injected JwtService
     private final AuthenticationManager authenticationManager; // Injected AuthenticationManager
+    private final KnownUserService knownUserService;
 
     public AuthenticationServiceJpa(
             AuthenticationRepository authenticationRepository,
             PasswordEncoder passwordEncoder,
             JwtService jwtService,
-            AuthenticationManager authenticationManager) { // Inject AuthenticationManager
+            AuthenticationManager authenticationManager, // Inject AuthenticationManager
+            KnownUserService knownUserService) {
         this.authenticationRepository = authenticationRepository;
         this.passwordEncoder = passwordEncoder;
         this.jwtService = jwtService;
         this.authenticationManager = authenticationManager;
+        this.knownUserService = knownUserService;
     }
 
     @Override
     @Transactional
     public AuthenticationResultDTO register(RegisterRequest registerRequest) throws UserAlreadyExistsException {
-        if (authenticationRepository.findByUsername(registerRequest.getUsername()).isPresent()) {
-            throw new UserAlreadyExistsException("User with username '" + registerRequest.getUsername() + "' already exists.");
-        }
-        if (authenticationRepository.findByEmail(registerRequest.getEmail()).isPresent()) {
-            throw new UserAlreadyExistsException("User with email '" + registerRequest.getEmail() + "' already exists.");
-        }
+        // no query for a username and email that are certainly new, the unique constraints decide in the end
+        knownUserService.checkAvailable(registerRequest.getUsername(), registerRequest.getEmail());
 
         User newUser = new User();
         newUser.setFirstName(registerRequest.getFirstName());
@@ -65,7 +66,13 @@ public class AuthenticationServiceJpa implements AuthenticationService {
         newUser.setTransferLimit(BigDecimal.valueOf(0.0));
         newUser.setPassword(passwordEncoder.encode(registerRequest.getPassword()));
 
-        User savedUser = authenticationRepository.save(newUser);
+        User savedUser;
+        try {
+            savedUser = authenticationRepository.saveAndFlush(newUser);
+        } catch (DataIntegrityViolationException e) {
+            throw knownUserService.toUserAlreadyExists(e, newUser.getUsername(), newUser.getEmail());
+        }
+        knownUserService.registered(savedUser.getUsername(), savedUser.getEmail());
 
         // Generate JWT token for the newly registered user
         String jwtToken = jwtService.generateToken((UserDetails) savedUser); // Use savedUser directly as it implements UserDetails
@@ -85,6 +92,9 @@ public class AuthenticationServiceJpa implements AuthenticationService {
                             loginRequest.getPassword()
                     )
             );
+        } catch (PasswordHashingBusyException e) {
+            // not the password that is wrong, the client should retry
+            throw e;
         } catch (Exception e) { // Catch AuthenticationException (or more specific ones)
             throw new InvalidCredentialsException("Invalid username or password.");
         }
@@ -0,0 +1,31 @@
+package com.krachbank.api.service;
+
+import java.nio.charset.StandardCharsets;
+
+// 64 bit hashes for the in memory sets, the bloom filter of KnownUserServiceJpa and the revocation wheel.
+// fast and well spread, not for anything that has to hold against someone picking the input
+final class Hashes {
+
+    private Hashes() {
+    }
+
+    // fnv-1a over the utf-8 bytes with the murmur3 finalizer
+    static long fnv(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    // murmur3 finalizer, spreads the bits so the low ones can be used as index
+    static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
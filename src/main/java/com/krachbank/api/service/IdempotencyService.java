@@ -0,0 +1,19 @@
+package com.krachbank.api.service;
+
+import java.util.Optional;
+
+import com.krachbank.api.models.IdempotencyKey;
+
+public interface IdempotencyService {
+
+    // the stored response for this key of the user, empty when the key is unknown or expired
+    public Optional<IdempotencyKey> getResponse(Long userId, String key);
+
+    // has to be called in the same transaction as the request it belongs to
+    public IdempotencyKey saveResponse(Long userId, String key, String requestHash, int status, Object responseBody);
+
+    // what a retry is recognised by, the same request gives the same hash
+    public String requestHash(Object request);
+
+    public int removeExpired();
+}
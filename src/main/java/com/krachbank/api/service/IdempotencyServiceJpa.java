@@ -0,0 +1,161 @@
+package com.krachbank.api.service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.krachbank.api.models.IdempotencyKey;
+import com.krachbank.api.repository.IdempotencyKeyRepository;
+
+import jakarta.transaction.Transactional;
+
+@Service
+public class IdempotencyServiceJpa implements IdempotencyService {
+
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final ObjectMapper objectMapper;
+    private final Duration timeToLive;
+
+    // recent keys, so most retries do not even need the database
+    private final Cache<UserKey, IdempotencyKey> cache;
+
+    public IdempotencyServiceJpa(IdempotencyKeyRepository idempotencyKeyRepository, ObjectMapper objectMapper,
+            @Value("${application.idempotency.ttl:PT24H}") Duration timeToLive,
+            @Value("${application.idempotency.cache-size:10000}") long cacheSize) {
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.objectMapper = objectMapper;
+        this.timeToLive = timeToLive;
+        // a key stays in the cache until its own expiresAt, also one loaded from the database late in its life
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfter(new Expiry<UserKey, IdempotencyKey>() {
+                    @Override
+                    public long expireAfterCreate(UserKey key, IdempotencyKey value, long currentTime) {
+                        return nanosLeft(value);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(UserKey key, IdempotencyKey value, long currentTime,
+                            long currentDuration) {
+                        return nanosLeft(value);
+                    }
+
+                    @Override
+                    public long expireAfterRead(UserKey key, IdempotencyKey value, long currentTime,
+                            long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    private static long nanosLeft(IdempotencyKey key) {
+        return Math.max(0, Duration.between(LocalDateTime.now(), key.getExpiresAt()).toNanos());
+    }
+
+    @Override
+    public Optional<IdempotencyKey> getResponse(Long userId, String key) {
+        UserKey userKey = userKey(userId, key);
+
+        IdempotencyKey cached = cache.getIfPresent(userKey);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        Optional<IdempotencyKey> stored = idempotencyKeyRepository.findByUserIdAndKey(userId, key);
+        if (stored.isEmpty()) {
+            return Optional.empty();
+        }
+        if (stored.get().getExpiresAt().isBefore(LocalDateTime.now())) {
+            // not cleaned up yet, remove it so the key can be used again
+            idempotencyKeyRepository.delete(stored.get());
+            return Optional.empty();
+        }
+        cache.put(userKey, stored.get());
+        return stored;
+    }
+
+    @Override
+    public IdempotencyKey saveResponse(Long userId, String key, String requestHash, int status,
+            Object responseBody) {
+        UserKey userKey = userKey(userId, key);
+        if (requestHash == null || requestHash.isBlank()) {
+            throw new IllegalArgumentException("Request hash cannot be empty");
+        }
+
+        String body;
+        try {
+            body = objectMapper.writeValueAsString(responseBody);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("response can not be stored", e);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        IdempotencyKey idempotencyKey = new IdempotencyKey(null, userId, key, requestHash, status, body, now,
+                now.plus(timeToLive));
+
+        // flush right away so a duplicate key fails here, while the request can still be rolled back
+        IdempotencyKey saved = idempotencyKeyRepository.saveAndFlush(idempotencyKey);
+
+        // only cache it when the request is really committed
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.put(userKey, saved);
+                }
+            });
+        } else {
+            cache.put(userKey, saved);
+        }
+        return saved;
+    }
+
+    // the request as json, so fields in the same order and an equal request gives an equal hash
+    @Override
+    public String requestHash(Object request) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(request);
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(json));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("request can not be hashed", e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static UserKey userKey(Long userId, String key) {
+        if (userId == null) {
+            throw new IllegalArgumentException("Idempotency key needs a user");
+        }
+        if (key == null || key.isBlank()) {
+            throw new IllegalArgumentException("Idempotency key cannot be empty");
+        }
+        return new UserKey(userId, key);
+    }
+
+    @Override
+    @Transactional
+    @Scheduled(fixedDelayString = "${application.idempotency.cleanup-interval:PT10M}")
+    public int removeExpired() {
+        return idempotencyKeyRepository.deleteExpired(LocalDateTime.now());
+    }
+
+    // the same key of two users are two different keys
+    private record UserKey(Long userId, String key) {
+    }
+}
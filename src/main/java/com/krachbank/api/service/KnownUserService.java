@@ -0,0 +1,19 @@
+package com.krachbank.api.service;
+
+import org.springframework.dao.DataIntegrityViolationException;
+
+import com.krachbank.api.exceptions.UserAlreadyExistsException;
+
+public interface KnownUserService {
+
+    // throws UserAlreadyExistsException when the username or email is taken.
+    // only queries when they might be taken, the unique constraints are what really decides
+    public void checkAvailable(String username, String email) throws UserAlreadyExistsException;
+
+    // remembers a username and email once the transaction that saved them commits
+    public void registered(String username, String email);
+
+    // the UserAlreadyExistsException for a violated unique constraint, other violations are thrown again
+    public UserAlreadyExistsException toUserAlreadyExists(DataIntegrityViolationException e, String username,
+            String email);
+}
@@ -0,0 +1,159 @@
+package com.krachbank.api.service;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.krachbank.api.exceptions.UserAlreadyExistsException;
+import com.krachbank.api.models.User;
+import com.krachbank.api.repository.UserRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import jakarta.annotation.PostConstruct;
+
+// a bloom filter of every username and email in use. when neither is in it they are certainly free
+// and registration is just the insert, otherwise one query tells if they are really taken.
+// the filter never forgets, a deleted user only costs that one query
+@Service
+public class KnownUserServiceJpa implements KnownUserService {
+
+    private final UserRepository userRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+    private final Counter skipped;
+    private final Counter queried;
+
+    public KnownUserServiceJpa(UserRepository userRepository, PlatformTransactionManager transactionManager,
+            @Value("${application.users.known-filter.expected-users:1000000}") long expectedUsers,
+            @Value("${application.users.known-filter.false-positive-rate:0.01}") double falsePositiveRate,
+            MeterRegistry meterRegistry) {
+        if (expectedUsers <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Invalid known user filter size");
+        }
+        this.userRepository = userRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+
+        // a username and an email per user
+        long entries = expectedUsers * 2;
+        long bits = (long) Math.ceil(-entries * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.bitCount = Math.max(64, bits);
+        this.bits = new AtomicLongArray(Math.toIntExact((bitCount + 63) / 64));
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / entries * Math.log(2)));
+
+        this.skipped = Counter.builder("users.registration.checks").tag("result", "skipped").register(meterRegistry);
+        this.queried = Counter.builder("users.registration.checks").tag("result", "queried").register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void load() {
+        readOnlyTransaction.executeWithoutResult(status -> {
+            try (var rows = userRepository.streamUsernamesAndEmails()) {
+                rows.forEach(row -> add((String) row[0], (String) row[1]));
+            }
+        });
+    }
+
+    @Override
+    public void checkAvailable(String username, String email) throws UserAlreadyExistsException {
+        if (!mightContain(usernameKey(username)) && !mightContain(emailKey(email))) {
+            skipped.increment();
+            return;
+        }
+        queried.increment();
+        List<Object[]> taken = userRepository.findByUsernameOrEmail(username, email);
+        for (Object[] row : taken) {
+            if (username != null && username.equals(row[0])) {
+                throw usernameTaken(username);
+            }
+        }
+        if (!taken.isEmpty()) {
+            throw emailTaken(email);
+        }
+    }
+
+    @Override
+    public void registered(String username, String email) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    add(username, email);
+                }
+            });
+        } else {
+            add(username, email);
+        }
+    }
+
+    @Override
+    public UserAlreadyExistsException toUserAlreadyExists(DataIntegrityViolationException e, String username,
+            String email) {
+        // h2 and postgres both put the constraint name in the message
+        String message = String.valueOf(e.getMostSpecificCause().getMessage()).toLowerCase(Locale.ROOT);
+        if (message.contains(User.USERNAME_CONSTRAINT)) {
+            return usernameTaken(username);
+        }
+        if (message.contains(User.EMAIL_CONSTRAINT)) {
+            return emailTaken(email);
+        }
+        throw e;
+    }
+
+    private static UserAlreadyExistsException usernameTaken(String username) {
+        return new UserAlreadyExistsException("User with username '" + username + "' already exists.");
+    }
+
+    private static UserAlreadyExistsException emailTaken(String email) {
+        return new UserAlreadyExistsException("User with email '" + email + "' already exists.");
+    }
+
+    private void add(String username, String email) {
+        put(usernameKey(username));
+        put(emailKey(email));
+    }
+
+    private static String usernameKey(String username) {
+        return "u:" + username;
+    }
+
+    private static String emailKey(String email) {
+        return "e:" + email;
+    }
+
+    // double hashing: the k indexes are h1 + i * h2 of one 64 bit hash
+    private void put(String key) {
+        long hash = Hashes.fnv(key);
+        long h1 = (int) hash;
+        long h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            long index = Math.floorMod(h1 + i * h2, bitCount);
+            bits.getAndAccumulate((int) (index >>> 6), 1L << index, (word, bit) -> word | bit);
+        }
+    }
+
+    private boolean mightContain(String key) {
+        long hash = Hashes.fnv(key);
+        long h1 = (int) hash;
+        long h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            long index = Math.floorMod(h1 + i * h2, bitCount);
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
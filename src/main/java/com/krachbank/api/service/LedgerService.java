@@ -0,0 +1,19 @@
+package com.krachbank.api.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import com.krachbank.api.models.Transaction;
+
+public interface LedgerService {
+
+    // the two entries of a transfer, has to be called in the same db transaction as the balance change
+    public void record(Transaction transaction, LocalDateTime at);
+
+    public BigDecimal getBalanceAt(Long accountId, LocalDateTime at);
+
+    // snapshots of every account that changed since the last ones, returns how many where written
+    public int takeSnapshots();
+
+    public int takeSnapshots(LocalDateTime upTo);
+}
@@ -0,0 +1,157 @@
+package com.krachbank.api.service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.krachbank.api.models.BalanceSnapshot;
+import com.krachbank.api.models.LedgerEntry;
+import com.krachbank.api.models.Transaction;
+import com.krachbank.api.repository.AccountRepository;
+import com.krachbank.api.repository.BalanceSnapshotRepository;
+import com.krachbank.api.repository.LedgerEntryRepository;
+
+// balance history of the accounts. a balance in the past is the nearest snapshot plus the entries
+// between it and the moment, so it never adds up more than one snapshot interval of entries.
+// a snapshot is the live balance minus the entries after it, that way balances that where set without
+// a transfer (a new account, the seeder) are in there too.
+// transfers take the time of their entries only once they hold the row locks of both accounts, and a snapshot
+// locks the rows before it reads the balance. so every entry of the account up to the snapshot is committed
+// by then, however long the transfer took
+@Service
+public class LedgerServiceJpa implements LedgerService {
+
+    // the window of the very first snapshot run
+    private static final LocalDateTime BEGINNING = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    // accounts per IN list
+    private static final int CHUNK_SIZE = 1000;
+
+    private final LedgerEntryRepository ledgerEntryRepository;
+    private final BalanceSnapshotRepository balanceSnapshotRepository;
+    private final AccountRepository accountRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration lookBack;
+
+    public LedgerServiceJpa(LedgerEntryRepository ledgerEntryRepository,
+            BalanceSnapshotRepository balanceSnapshotRepository, AccountRepository accountRepository,
+            PlatformTransactionManager transactionManager,
+            @Value("${application.ledger.snapshot-interval:PT1H}") Duration snapshotInterval) {
+        this.ledgerEntryRepository = ledgerEntryRepository;
+        this.balanceSnapshotRepository = balanceSnapshotRepository;
+        this.accountRepository = accountRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // an account that changed has a snapshot at least every interval, with room for slow runs
+        this.lookBack = snapshotInterval.multipliedBy(2);
+    }
+
+    @Override
+    public void record(Transaction transaction, LocalDateTime at) {
+        if (transaction == null || transaction.getId() == null) {
+            throw new IllegalArgumentException("Transaction has to be saved first");
+        }
+        BigDecimal amount = transaction.getAmount();
+        ledgerEntryRepository.saveAll(List.of(
+                new LedgerEntry(null, transaction.getFromAccount().getId(), transaction.getId(), amount.negate(), at),
+                new LedgerEntry(null, transaction.getToAccount().getId(), transaction.getId(), amount, at)));
+    }
+
+    @Override
+    public BigDecimal getBalanceAt(Long accountId, LocalDateTime at) {
+        if (accountId == null) {
+            throw new IllegalArgumentException("Account ID is required");
+        }
+        if (at == null) {
+            throw new IllegalArgumentException("date is null");
+        }
+
+        // h2 reads every older snapshot of the account for an open range, so try the last few intervals first.
+        // only an account that did not change in that time needs the open range
+        Optional<BalanceSnapshot> before = balanceSnapshotRepository
+                .findFirstByAccountIdAndTakenAtBetweenOrderByTakenAtDesc(accountId, at.minus(lookBack), at);
+        if (before.isEmpty()) {
+            before = balanceSnapshotRepository.findFirstByAccountIdAndTakenAtLessThanEqualOrderByTakenAtDesc(accountId,
+                    at);
+        }
+        if (before.isPresent()) {
+            return before.get().getBalance()
+                    .add(ledgerEntryRepository.sumAmount(accountId, before.get().getTakenAt(), at));
+        }
+
+        // before the first snapshot of the account, go back from the one after it
+        Optional<BalanceSnapshot> after = balanceSnapshotRepository
+                .findFirstByAccountIdAndTakenAtGreaterThanOrderByTakenAtAsc(accountId, at);
+        if (after.isPresent()) {
+            return after.get().getBalance()
+                    .subtract(ledgerEntryRepository.sumAmount(accountId, at, after.get().getTakenAt()));
+        }
+
+        // no snapshot yet, so the account only changed since the last snapshot run
+        List<Object[]> rows = ledgerEntryRepository.findBalancesAt(List.of(accountId), at);
+        if (rows.isEmpty()) {
+            throw new IllegalArgumentException("Account does not exist");
+        }
+        return (BigDecimal) rows.get(0)[1];
+    }
+
+    // the first run waits a whole interval so a restart does not run it again
+    @Override
+    @Scheduled(fixedDelayString = "${application.ledger.snapshot-interval:PT1H}",
+            initialDelayString = "${application.ledger.snapshot-interval:PT1H}")
+    public int takeSnapshots() {
+        return takeSnapshots(LocalDateTime.now());
+    }
+
+    @Override
+    public int takeSnapshots(LocalDateTime upTo) {
+        if (upTo == null) {
+            throw new IllegalArgumentException("date is null");
+        }
+        // a transfer that locks the rows after us can still get a time before a moment in the future
+        if (upTo.isAfter(LocalDateTime.now())) {
+            throw new IllegalArgumentException("a snapshot can not be in the future");
+        }
+        // the column keeps microseconds and rounds the rest, rounded up the snapshot would be after upTo
+        LocalDateTime takenAt = upTo.truncatedTo(ChronoUnit.MICROS);
+        LocalDateTime after = balanceSnapshotRepository.findLastTakenAt().orElse(BEGINNING);
+        if (!takenAt.isAfter(after)) {
+            return 0;
+        }
+
+        // only accounts with entries since the last run, the others are still covered by their last snapshot.
+        // an account of a transfer that did not commit yet is left out, its older snapshot plus the entries
+        // still adds up to the right balance
+        List<Long> changed = new ArrayList<>(ledgerEntryRepository.findAccountIdsBetween(after, takenAt));
+        Collections.sort(changed);
+        int taken = 0;
+        // a db transaction per chunk so transfers never wait on more than one chunk of locked accounts.
+        // ordered by id like the transfers lock them
+        for (int start = 0; start < changed.size(); start += CHUNK_SIZE) {
+            List<Long> ids = changed.subList(start, Math.min(start + CHUNK_SIZE, changed.size()));
+            taken += transactionTemplate.execute(status -> takeSnapshots(ids, takenAt));
+        }
+        return taken;
+    }
+
+    private int takeSnapshots(List<Long> ids, LocalDateTime upTo) {
+        // waits for the transfers that are still busy with these accounts
+        accountRepository.findAllByIdForUpdate(ids);
+        List<BalanceSnapshot> snapshots = new ArrayList<>(ids.size());
+        for (Object[] row : ledgerEntryRepository.findBalancesAt(ids, upTo)) {
+            snapshots.add(new BalanceSnapshot(null, (Long) row[0], upTo, (BigDecimal) row[1]));
+        }
+        balanceSnapshotRepository.saveAll(snapshots);
+        return snapshots.size();
+    }
+}
@@ -0,0 +1,14 @@
+package com.krachbank.api.service;
+
+import com.krachbank.api.security.VerifiedToken;
+
+public interface TokenRevocationService {
+
+    // the token is rejected from now on until it expires, then it is forgotten
+    public void revoke(VerifiedToken token);
+
+    public boolean isRevoked(VerifiedToken token);
+
+    // revoked tokens that have not expired yet
+    public long size();
+}
@@ -0,0 +1,201 @@
+package com.krachbank.api.service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.krachbank.api.security.VerifiedToken;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// revoked tokens in a hashed timing wheel keyed by expiry. a token can live at most
+// application.security.jwt.expiration, so the wheel has a slot for every tick of that time and
+// every revoked token sits in the slot of the tick it expires in. when the tick has passed the
+// whole slot is dropped, no per token bookkeeping.
+// a slot only keeps a 64 bit hash of the token id in a long array (16 to 32 bytes per token),
+// two different ids with the same hash would make a valid token look revoked, never the other way around
+@Service
+public class TokenRevocationWheel implements TokenRevocationService {
+
+    private static final long[] EMPTY = new long[0];
+
+    private final long tickMillis;
+    private final Slot[] slots;
+    // tokens that expire after the last slot, only when the expiration was made shorter while old tokens still live
+    private final Map<Long, Long> beyondHorizon = new ConcurrentHashMap<>();
+
+    public TokenRevocationWheel(
+            @Value("${application.security.jwt.expiration}") long jwtExpiration,
+            @Value("${application.security.jwt.revocation-tick:PT1M}") Duration tick,
+            MeterRegistry meterRegistry) {
+        if (tick.toMillis() <= 0) {
+            throw new IllegalArgumentException("Revocation tick must be positive");
+        }
+        this.tickMillis = tick.toMillis();
+        // one extra slot for the tick that is running and one for the rounding of the expiry
+        int slotCount = Math.toIntExact(jwtExpiration / tickMillis + 2);
+        this.slots = new Slot[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            slots[i] = new Slot();
+        }
+        Gauge.builder("jwt.revoked-tokens", this, TokenRevocationWheel::size).register(meterRegistry);
+    }
+
+    @Override
+    public void revoke(VerifiedToken token) {
+        if (token.expiration() == null) {
+            throw new IllegalArgumentException("Token without expiration can not be revoked");
+        }
+        long expiresAt = token.expiration().getTime();
+        long currentTick = System.currentTimeMillis() / tickMillis;
+        long expiryTick = expiresAt / tickMillis;
+        if (expiryTick < currentTick) {
+            return; // rejected as expired anyway
+        }
+        long hash = hash(token);
+        if (expiryTick - currentTick >= slots.length) {
+            beyondHorizon.merge(hash, expiresAt, Math::max);
+            return;
+        }
+
+        Slot slot = slotFor(expiryTick);
+        synchronized (slot) {
+            // same index as an expired tick that advance has not dropped yet
+            if (slot.tick != expiryTick) {
+                slot.reset(expiryTick);
+            }
+            slot.add(hash);
+        }
+    }
+
+    @Override
+    public boolean isRevoked(VerifiedToken token) {
+        if (token.expiration() == null) {
+            return false;
+        }
+        long hash = hash(token);
+        long expiryTick = token.expiration().getTime() / tickMillis;
+        Slot slot = slotFor(expiryTick);
+        synchronized (slot) {
+            if (slot.tick == expiryTick && slot.contains(hash)) {
+                return true;
+            }
+        }
+        return !beyondHorizon.isEmpty() && beyondHorizon.containsKey(hash);
+    }
+
+    @Override
+    public long size() {
+        long size = beyondHorizon.size();
+        for (Slot slot : slots) {
+            synchronized (slot) {
+                size += slot.size;
+            }
+        }
+        return size;
+    }
+
+    // drops the slots whose tick has passed, everything in them has expired
+    @Scheduled(fixedDelayString = "${application.security.jwt.revocation-tick:PT1M}")
+    public void advance() {
+        long now = System.currentTimeMillis();
+        long currentTick = now / tickMillis;
+        for (Slot slot : slots) {
+            synchronized (slot) {
+                if (slot.tick < currentTick && slot.size > 0) {
+                    slot.reset(-1);
+                }
+            }
+        }
+        beyondHorizon.values().removeIf(expiresAt -> expiresAt < now);
+    }
+
+    private Slot slotFor(long tick) {
+        return slots[(int) Math.floorMod(tick, (long) slots.length)];
+    }
+
+    // tokens from JwtService have a uuid jti, older ones are told apart by subject and issue time
+    private static long hash(VerifiedToken token) {
+        String id = token.tokenId();
+        long hash;
+        if (id != null && id.length() == 36) {
+            try {
+                UUID uuid = UUID.fromString(id);
+                hash = Hashes.mix(uuid.getMostSignificantBits() ^ Hashes.mix(uuid.getLeastSignificantBits()));
+            } catch (IllegalArgumentException e) {
+                hash = Hashes.fnv(id);
+            }
+        } else if (id != null) {
+            hash = Hashes.fnv(id);
+        } else {
+            hash = Hashes.mix(Hashes.fnv(String.valueOf(token.username()))
+                    ^ (token.issuedAt() == null ? 0 : token.issuedAt().getTime()));
+        }
+        // 0 marks an empty place in a slot
+        return hash == 0 ? 1 : hash;
+    }
+
+    // open addressing set of longs, kept at most half full
+    private static final class Slot {
+        private long tick = -1;
+        private long[] hashes = EMPTY;
+        private int size;
+
+        private void reset(long tick) {
+            this.tick = tick;
+            this.hashes = EMPTY;
+            this.size = 0;
+        }
+
+        private void add(long hash) {
+            if ((size + 1) * 2 > hashes.length) {
+                grow();
+            }
+            if (insert(hashes, hash)) {
+                size++;
+            }
+        }
+
+        private boolean contains(long hash) {
+            if (size == 0) {
+                return false;
+            }
+            int mask = hashes.length - 1;
+            for (int i = (int) hash & mask; hashes[i] != 0; i = (i + 1) & mask) {
+                if (hashes[i] == hash) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void grow() {
+            long[] grown = new long[Math.max(16, hashes.length * 2)];
+            for (long hash : hashes) {
+                if (hash != 0) {
+                    insert(grown, hash);
+                }
+            }
+            hashes = grown;
+        }
+
+        private static boolean insert(long[] table, long hash) {
+            int mask = table.length - 1;
+            int i = (int) hash & mask;
+            while (table[i] != 0) {
+                if (table[i] == hash) {
+                    return false;
+                }
+                i = (i + 1) & mask;
+            }
+            table[i] = hash;
+            return true;
+        }
+    }
+}
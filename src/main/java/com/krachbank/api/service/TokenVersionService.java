@@ -0,0 +1,13 @@
+package com.krachbank.api.service;
+
+public interface TokenVersionService {
+
+    // the version a token of this user needs to have to be accepted
+    public int currentVersion(Long userId);
+
+    // every token issued before this call stops working
+    public void revokeTokens(Long userId);
+
+    // reloads the versions from the database, picks up revokes done by other instances
+    public void refresh();
+}
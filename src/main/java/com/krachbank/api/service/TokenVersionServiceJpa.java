@@ -0,0 +1,67 @@
+package com.krachbank.api.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.krachbank.api.repository.UserRepository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.transaction.Transactional;
+
+// token versions of the users whose tokens were ever revoked, everybody else is on version 0.
+// the map is small and kept in memory so checking a token needs no query
+@Service
+public class TokenVersionServiceJpa implements TokenVersionService {
+
+    private final UserRepository userRepository;
+    private final Map<Long, Integer> versions = new ConcurrentHashMap<>();
+
+    public TokenVersionServiceJpa(UserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    @Override
+    public int currentVersion(Long userId) {
+        return versions.getOrDefault(userId, 0);
+    }
+
+    @Override
+    @Transactional
+    public void revokeTokens(Long userId) {
+        if (userId == null) {
+            throw new IllegalArgumentException("User ID cannot be null");
+        }
+        if (userRepository.incrementTokenVersion(userId) == 0) {
+            throw new IllegalArgumentException("User not found with ID: " + userId);
+        }
+        int version = userRepository.findTokenVersionById(userId).orElseThrow();
+
+        // this instance knows right away, the others when they refresh
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    versions.merge(userId, version, Math::max);
+                }
+            });
+        } else {
+            versions.merge(userId, version, Math::max);
+        }
+    }
+
+    @Override
+    @PostConstruct
+    @Scheduled(fixedDelayString = "${application.security.jwt.token-version-refresh:PT30S}",
+            initialDelayString = "${application.security.jwt.token-version-refresh:PT30S}")
+    public void refresh() {
+        // versions only go up, so keeping the highest one never undoes a revoke that committed during the query
+        for (Object[] row : userRepository.findRevokedTokenVersions()) {
+            versions.merge((Long) row[0], (Integer) row[1], Math::max);
+        }
+    }
+}
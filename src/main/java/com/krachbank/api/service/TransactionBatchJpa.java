@@ -0,0 +1,189 @@
+package com.krachbank.api.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.krachbank.api.dto.BatchTransactionDTOResponse;
+import com.krachbank.api.models.Account;
+import com.krachbank.api.models.Transaction;
+import com.krachbank.api.models.User;
+import com.krachbank.api.repository.AccountRepository;
+import com.krachbank.api.repository.TransactionRepository;
+
+import jakarta.persistence.EntityManager;
+
+// applies big lists of transfers in chunks, every chunk is one db transaction
+// inside a chunk nothing is queried between the inserts and updates so hibernate
+// can send them to the database in jdbc batches
+@Service
+public class TransactionBatchJpa implements TransactionBatchService {
+
+    // a chunk that lost a race with another transfer is rolled back and runs again
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final TransactionJpa transactionJpa;
+    private final TransactionRepository transactionRepository;
+    private final AccountRepository accountRepository;
+    private final EntityManager entityManager;
+    private final LedgerService ledgerService;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+
+    public TransactionBatchJpa(TransactionJpa transactionJpa, TransactionRepository transactionRepository,
+            AccountRepository accountRepository, LedgerService ledgerService, EntityManager entityManager,
+            PlatformTransactionManager transactionManager,
+            @Value("${application.transactions.batch.chunk-size:500}") int chunkSize) {
+        this.transactionJpa = transactionJpa;
+        this.transactionRepository = transactionRepository;
+        this.accountRepository = accountRepository;
+        this.ledgerService = ledgerService;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public List<BatchTransactionDTOResponse> createTransactions(List<Transaction> transactions) {
+        if (transactions == null) {
+            throw new IllegalArgumentException("No transactions provided");
+        }
+
+        List<BatchTransactionDTOResponse> results = new ArrayList<>();
+        for (int start = 0; start < transactions.size(); start += chunkSize) {
+            List<Transaction> chunk = transactions.subList(start, Math.min(start + chunkSize, transactions.size()));
+            int offset = start;
+            results.addAll(runChunk(chunk, offset));
+        }
+        return results;
+    }
+
+    // like TransferRunner, every attempt starts from the transfers the caller passed in
+    private List<BatchTransactionDTOResponse> runChunk(List<Transaction> chunk, int offset) {
+        List<Runnable> resets = chunk.stream().map(TransactionJpa::resetBeforeAttempt).toList();
+        for (int attempt = 1;; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> createChunk(chunk, offset));
+            } catch (ConcurrencyFailureException e) {
+                if (attempt >= MAX_ATTEMPTS) {
+                    throw e;
+                }
+                resets.forEach(Runnable::run);
+            }
+        }
+    }
+
+    private List<BatchTransactionDTOResponse> createChunk(List<Transaction> chunk, int offset) {
+        // lock every account of the chunk in one query, ordered by id so chunks can not deadlock
+        TreeSet<Long> accountIds = new TreeSet<>();
+        for (Transaction transaction : chunk) {
+            if (transaction.getFromAccount() != null && transaction.getFromAccount().getId() != null) {
+                accountIds.add(transaction.getFromAccount().getId());
+            }
+            if (transaction.getToAccount() != null && transaction.getToAccount().getId() != null) {
+                accountIds.add(transaction.getToAccount().getId());
+            }
+        }
+        Map<Long, Account> lockedAccounts = new HashMap<>();
+        if (!accountIds.isEmpty()) {
+            for (Account account : accountRepository.findAllByIdForUpdate(accountIds)) {
+                lockedAccounts.put(account.getId(), account);
+            }
+        }
+
+        // after the account locks, like a single transfer
+        LocalDateTime now = LocalDateTime.now();
+        LocalDate today = now.toLocalDate();
+
+        // lock the daily counter of every sending user, after the accounts like a single transfer and ordered
+        // by user id so chunks can not deadlock. nobody else can add to them now, so the limits are checked
+        // in memory and the counters are updated once at the end
+        Map<Long, User> owners = new TreeMap<>();
+        for (Transaction transaction : chunk) {
+            Account sendingAccount = transaction.getFromAccount() == null ? null
+                    : lockedAccounts.get(transaction.getFromAccount().getId());
+            if (sendingAccount != null && sendingAccount.getUser() != null) {
+                owners.put(sendingAccount.getUser().getId(), sendingAccount.getUser());
+            }
+        }
+        Map<Long, BigDecimal> spendToday = new HashMap<>();
+        for (User owner : owners.values()) {
+            spendToday.put(owner.getId(), transactionJpa.lockDailySpend(owner, today));
+        }
+        Map<Long, BigDecimal> spendInChunk = new HashMap<>();
+
+        List<Transaction> created = new ArrayList<>();
+        List<BatchTransactionDTOResponse> results = new ArrayList<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            Transaction transaction = chunk.get(i);
+            try {
+                transactionJpa.validateTransfer(transaction);
+
+                Account sendingAccount = lockedAccounts.get(transaction.getFromAccount().getId());
+                Account receivingAccount = lockedAccounts.get(transaction.getToAccount().getId());
+                if (sendingAccount == null || receivingAccount == null) {
+                    throw new IllegalArgumentException("Account does not exist");
+                }
+                transaction.setFromAccount(sendingAccount);
+                transaction.setToAccount(receivingAccount);
+
+                // what the owner spend today including the earlier transfers of this chunk, also for the
+                // transfers that do not count towards it
+                User user = sendingAccount.getUser();
+                BigDecimal alreadySpend = spendToday.get(user.getId())
+                        .add(spendInChunk.getOrDefault(user.getId(), BigDecimal.ZERO));
+
+                transactionJpa.reachedAbsoluteLimit(sendingAccount, transaction.getAmount());
+                transactionJpa.reachedDailyTransferLimit(user, transaction.getAmount(), alreadySpend);
+                transactionJpa.transferAmountBiggerThenTransferLimit(sendingAccount, transaction.getAmount());
+
+                transaction.setCreatedAt(now);
+                transactionRepository.save(transaction);
+                ledgerService.record(transaction, now);
+
+                // the balances last, a failed insert must not leave them changed on the managed accounts.
+                // the changes are flushed as batched updates
+                sendingAccount.setBalance(sendingAccount.getBalance().subtract(transaction.getAmount()));
+                receivingAccount.setBalance(receivingAccount.getBalance().add(transaction.getAmount()));
+
+                if (transactionJpa.isSpendByOwner(transaction)) {
+                    spendInChunk.merge(user.getId(), transaction.getAmount(), BigDecimal::add);
+                }
+                created.add(transaction);
+                results.add(new BatchTransactionDTOResponse(offset + i, true, null, null));
+            } catch (Exception e) {
+                results.add(new BatchTransactionDTOResponse(offset + i, false, null, e.getMessage()));
+            }
+        }
+
+        // the counters exist and are locked since the start of the chunk
+        for (Map.Entry<Long, BigDecimal> spend : spendInChunk.entrySet()) {
+            transactionJpa.addToDailySpend(owners.get(spend.getKey()), today, spend.getValue());
+        }
+
+        entityManager.flush();
+
+        int createdIndex = 0;
+        for (BatchTransactionDTOResponse result : results) {
+            if (result.isSuccess()) {
+                result.setTransaction(transactionJpa.toDTO(created.get(createdIndex++)));
+            }
+        }
+
+        // keep the persistence context small, the next chunk starts empty
+        entityManager.clear();
+        return results;
+    }
+}
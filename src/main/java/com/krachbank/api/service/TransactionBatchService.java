@@ -0,0 +1,12 @@
+package com.krachbank.api.service;
+
+import java.util.List;
+
+import com.krachbank.api.dto.BatchTransactionDTOResponse;
+import com.krachbank.api.models.Transaction;
+
+public interface TransactionBatchService {
+
+    // applies all transfers and returns one result per transfer, in the same order
+    public List<BatchTransactionDTOResponse> createTransactions(List<Transaction> transactions);
+}
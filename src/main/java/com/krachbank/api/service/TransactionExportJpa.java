@@ -0,0 +1,124 @@
+package com.krachbank.api.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.krachbank.api.dto.TransactionDTOResponse;
+import com.krachbank.api.models.Transaction;
+import com.krachbank.api.repository.TransactionRepository;
+
+import jakarta.persistence.EntityManager;
+
+// streams the transaction history straight from the database cursor to the response,
+// nothing is collected in a list so the heap use does not grow with the number of rows
+@Service
+public class TransactionExportJpa implements TransactionExportService {
+
+    private static final String CSV_HEADER = "createdAt,amount,sender,receiver,initiator,description";
+
+    private final TransactionRepository transactionRepository;
+    private final TransactionService transactionService;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectWriter jsonWriter;
+
+    public TransactionExportJpa(TransactionRepository transactionRepository, TransactionService transactionService,
+            EntityManager entityManager, PlatformTransactionManager transactionManager, ObjectMapper objectMapper) {
+        this.transactionRepository = transactionRepository;
+        this.transactionService = transactionService;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.jsonWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    @Override
+    public void exportTransactions(LocalDateTime from, LocalDateTime to, String format, OutputStream out)
+            throws IOException {
+        if (!FORMAT_NDJSON.equals(format) && !FORMAT_CSV.equals(format)) {
+            throw new IllegalArgumentException("Unknown export format, use ndjson or csv");
+        }
+        if (from != null && to != null && !from.isBefore(to)) {
+            throw new IllegalArgumentException("from has to be before to");
+        }
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        if (FORMAT_CSV.equals(format)) {
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+        }
+
+        try {
+            // the stream only works while the transaction (and so the connection) is open
+            transactionTemplate.executeWithoutResult(status -> {
+                try (Stream<Transaction> transactions = transactionRepository.streamForExport(from, to)) {
+                    Iterator<Transaction> iterator = transactions.iterator();
+                    int written = 0;
+                    while (iterator.hasNext()) {
+                        Transaction transaction = iterator.next();
+                        TransactionDTOResponse dto = transactionService.toDTO(transaction);
+                        entityManager.detach(transaction);
+                        if (FORMAT_CSV.equals(format)) {
+                            writeCsv(writer, dto);
+                        } else {
+                            writer.write(jsonWriter.writeValueAsString(dto));
+                            writer.write('\n');
+                        }
+
+                        // the accounts and users are still in the persistence context, drop them every chunk
+                        if (++written % TransactionRepository.EXPORT_FETCH_SIZE == 0) {
+                            entityManager.clear();
+                            writer.flush();
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+    }
+
+    private void writeCsv(Writer writer, TransactionDTOResponse dto) throws IOException {
+        writer.write(csv(dto.getCreatedAt() == null ? null : dto.getCreatedAt().toString()));
+        writer.write(',');
+        writer.write(csv(dto.getAmount() == null ? null : dto.getAmount().toPlainString()));
+        writer.write(',');
+        writer.write(csv(dto.getSender()));
+        writer.write(',');
+        writer.write(csv(dto.getReceiver()));
+        writer.write(',');
+        writer.write(csv(dto.getInitiator() == null ? null : dto.getInitiator().toString()));
+        writer.write(',');
+        writer.write(csv(dto.getDescription()));
+        writer.write('\n');
+    }
+
+    // quote the value when it has a separator, a quote or a line break in it
+    static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+}
@@ -0,0 +1,16 @@
+package com.krachbank.api.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+
+public interface TransactionExportService {
+
+    public static final String FORMAT_NDJSON = "ndjson";
+    public static final String FORMAT_CSV = "csv";
+
+    // writes every transaction between from (inclusive) and to (exclusive) to out, oldest first
+    // from and to can be null for no bound, format is ndjson or csv
+    public void exportTransactions(LocalDateTime from, LocalDateTime to, String format, OutputStream out)
+            throws IOException;
+}
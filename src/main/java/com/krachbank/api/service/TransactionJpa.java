@@ -1,13 +1,18 @@
 package com.krachbank.api.service;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.KeysetScrollPosition;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 
@@ -16,10 +21,13 @@ import com.krachbank.api.filters.BaseFilter;
 import com.krachbank.api.filters.TransactionFilter;
 import com.krachbank.api.models.Account;
 import com.krachbank.api.models.AccountType;
+import com.krachbank.api.models.DailySpend;
 import com.krachbank.api.models.Transaction;
 import com.krachbank.api.models.User;
+import com.krachbank.api.repository.DailySpendRepository;
 import com.krachbank.api.repository.TransactionRepository;
 
+import jakarta.persistence.criteria.JoinType;
 import jakarta.persistence.criteria.Predicate;
 import jakarta.transaction.Transactional;
 
@@ -30,21 +38,176 @@ public class TransactionJpa implements TransactionService {
 
     private final TransactionRepository transactionRepository;
 
-    public TransactionJpa(TransactionRepository transactionRepository, AccountServiceJpa accountServiceJpa) {
+    private final DailySpendRepository dailySpendRepository;
+
+    private final IdempotencyService idempotencyService;
+
+    private final TransferRunner transferRunner;
+
+    private final LedgerService ledgerService;
+
+    public TransactionJpa(TransactionRepository transactionRepository, AccountServiceJpa accountServiceJpa,
+            DailySpendRepository dailySpendRepository, IdempotencyService idempotencyService,
+            TransferRunner transferRunner, LedgerService ledgerService) {
         this.transactionRepository = transactionRepository;
         this.accountServiceJpa = accountServiceJpa;
+        this.dailySpendRepository = dailySpendRepository;
+        this.idempotencyService = idempotencyService;
+        this.transferRunner = transferRunner;
+        this.ledgerService = ledgerService;
     }
 
+    // TransferRunner runs this in its own db transaction and again after a conflict with another transfer
     @Override
-    @Transactional
     public Optional<Transaction> createTransaction(Transaction transaction) throws Exception {
+        Runnable reset = resetBeforeAttempt(transaction);
+        return transferRunner.run(() -> {
+            reset.run();
+            return transfer(transaction);
+        });
+    }
 
-        isValidTransaction(transaction);
-        transactionRepository.findById(transaction.getId()).ifPresent(existingTransaction -> {
-            throw new IllegalArgumentException("Transaction already exists");
+    @Override
+    public Optional<Transaction> createTransaction(Transaction transaction, Long userId, String idempotencyKey,
+            String requestHash) throws Exception {
+        Runnable reset = resetBeforeAttempt(transaction);
+        return transferRunner.run(() -> {
+            reset.run();
+            Optional<Transaction> createdTransaction = transfer(transaction);
+
+            // a second request with the same key fails on the unique index and rolls this transfer back
+            idempotencyService.saveResponse(userId, idempotencyKey, requestHash, 200,
+                    toDTO(createdTransaction.get()));
+
+            return createdTransaction;
         });
+    }
+
+    // a rolled back attempt leaves the accounts it loaded and the id hibernate gave it on the transaction,
+    // the next attempt has to start from what the caller passed in
+    static Runnable resetBeforeAttempt(Transaction transaction) {
+        Long id = transaction.getId();
+        Account sendingAccount = transaction.getFromAccount();
+        Account receivingAccount = transaction.getToAccount();
+        return () -> {
+            transaction.setId(id);
+            transaction.setFromAccount(sendingAccount);
+            transaction.setToAccount(receivingAccount);
+        };
+    }
+
+    private Optional<Transaction> transfer(Transaction transaction) throws Exception {
+
+        validateTransfer(transaction);
+
+        // the time is taken once both account rows are locked, see LedgerServiceJpa.takeSnapshots
+        LocalDateTime now;
+        if (transferRunner.getLocking() == TransferRunner.Locking.CONDITIONAL) {
+            now = moveBalances(transaction);
+        } else {
+            now = lockAndMoveBalances(transaction);
+        }
+
+        // the time of the server and not the one of the client, the daily spend counters are rebuild from it
+        transaction.setCreatedAt(now);
+
+        Transaction savedTransaction = transactionRepository.save(transaction);
+        ledgerService.record(savedTransaction, now);
+
+        return Optional.of(savedTransaction);
+
+    }
+
+    private LocalDateTime lockAndMoveBalances(Transaction transaction) throws Exception {
+        Account sendingAccount = transaction.getFromAccount();
+        Account receivingAccount = transaction.getToAccount();
+
+        // lock both accounts so no other transfer can change the balances until we commit,
+        // or with optimistic locking only load them and let the version check on commit find a race
+        Account[] lockedAccounts = lockAccounts(sendingAccount, receivingAccount);
+        sendingAccount = lockedAccounts[0];
+        receivingAccount = lockedAccounts[1];
+        transaction.setFromAccount(sendingAccount);
+        transaction.setToAccount(receivingAccount);
+
+        // check if account reached the absolute limit
+        reachedAbsoluteLimit(sendingAccount, transaction.getAmount());
+        // check if the transaction is bigger then the transfer limit
+        transferAmountBiggerThenTransferLimit(sendingAccount, transaction.getAmount());
+
+        // update account balance
+        sendingAccount.setBalance(sendingAccount.getBalance().subtract(transaction.getAmount()));
+        receivingAccount.setBalance(receivingAccount.getBalance().add(transaction.getAmount()));
+
+        accountServiceJpa.createAccount(sendingAccount);
+        accountServiceJpa.createAccount(receivingAccount);
+        // optimistic locking only writes the rows, and locks them, when it flushes
+        transactionRepository.flush();
+        LocalDateTime now = LocalDateTime.now();
+
+        // the locks only cover these two accounts, a transfer from another account of the owner can run
+        // at the same time. so the counter update checks the limit, like with the conditional updates
+        if (isSpendByOwner(transaction)) {
+            addToDailySpendWithinLimit(sendingAccount.getUser(), now.toLocalDate(), transaction.getAmount());
+        } else {
+            reachedDailyTransferLimit(sendingAccount.getUser(), transaction.getAmount(), now);
+        }
+        return now;
+    }
+
+    // the accounts are never loaded, the given ones only have to carry id, owner and transfer limit.
+    // the debit statement itself checks the absolute and transfer limit in the row, the given ones can be stale
+    private LocalDateTime moveBalances(Transaction transaction) throws Exception {
+        Account sendingAccount = transaction.getFromAccount();
+        Account receivingAccount = transaction.getToAccount();
+        BigDecimal amount = transaction.getAmount();
+
+        // the daily limit of the owner as it is now, the given owner can be an id only
+        User owner = new User();
+        owner.setId(sendingAccount.getUser().getId());
+        owner.setDailyLimit(accountServiceJpa.getOwnerDailyLimit(sendingAccount));
+        transferAmountBiggerThenTransferLimit(sendingAccount, amount);
+
+        // lowest id first like lockAccounts, two transfers in opposite directions would deadlock otherwise.
+        // when the debit fails after the credit the exception rolls the credit back
+        if (sendingAccount.getId() > receivingAccount.getId()) {
+            accountServiceJpa.credit(receivingAccount, amount);
+            debit(sendingAccount, amount);
+        } else {
+            debit(sendingAccount, amount);
+            accountServiceJpa.credit(receivingAccount, amount);
+        }
+        // the updates hold the row locks until commit
+        LocalDateTime now = LocalDateTime.now();
+
+        // no lock on the owner either, so the counter update itself checks the limit.
+        // two transfers at the same time can not both see the old total that way
+        if (isSpendByOwner(transaction)) {
+            addToDailySpendWithinLimit(owner, now.toLocalDate(), amount);
+        } else {
+            reachedDailyTransferLimit(owner, amount, now);
+        }
+        return now;
+    }
+
+    private void debit(Account account, BigDecimal amount) throws Exception {
+        if (!accountServiceJpa.debit(account, amount)) {
+            // only read on failure, to tell which limit it was
+            Account current = accountServiceJpa.getAccountById(account.getId()).get();
+            transferAmountBiggerThenTransferLimit(current, amount);
+            throw new Exception("cant spend more then the absolute limit");
+        }
+    }
+
+    // all checks that do not depend on the current balance of the accounts
+    public void validateTransfer(Transaction transaction) throws Exception {
+        isValidTransaction(transaction);
+        if (transaction.getId() != null) {
+            transactionRepository.findById(transaction.getId()).ifPresent(existingTransaction -> {
+                throw new IllegalArgumentException("Transaction already exists");
+            });
+        }
 
-     
         Account sendingAccount = transaction.getFromAccount();
         Account receivingAccount = transaction.getToAccount();
 
@@ -67,26 +230,88 @@ public class TransactionJpa implements TransactionService {
             }
 
         }
-        // check if account reached the absolute limit
-        reachedAbsoluteLimit(sendingAccount, transaction.getAmount());
+    }
 
-        // check if the transaction is below then the daily limit
-        reachedDailyTransferLimit(sendingAccount.getUser(), transaction.getAmount(), LocalDateTime.now());
-        // check if the transaction is bigger then the transfer limit
-        transferAmountBiggerThenTransferLimit(sendingAccount, transaction.getAmount());
+    // always lock the account with the lowest id first, two transfers between the same
+    // accounts in opposite directions would deadlock otherwise
+    // returns the locked accounts in the same order they where given
+    public Account[] lockAccounts(Account sendingAccount, Account receivingAccount) {
+        if (sendingAccount.getId() != null && receivingAccount.getId() != null
+                && sendingAccount.getId() > receivingAccount.getId()) {
+            Account lockedReceivingAccount = lockAccount(receivingAccount);
+            Account lockedSendingAccount = lockAccount(sendingAccount);
+            return new Account[] { lockedSendingAccount, lockedReceivingAccount };
+        }
+        Account lockedSendingAccount = lockAccount(sendingAccount);
+        Account lockedReceivingAccount = lockAccount(receivingAccount);
+        return new Account[] { lockedSendingAccount, lockedReceivingAccount };
+    }
 
-        // update account balance
-        sendingAccount.setBalance(sendingAccount.getBalance().subtract(transaction.getAmount()));
-        receivingAccount.setBalance(receivingAccount.getBalance().add(transaction.getAmount()));
+    private Account lockAccount(Account account) {
+        return transferRunner.getLocking() == TransferRunner.Locking.OPTIMISTIC
+                ? accountServiceJpa.readAccount(account)
+                : accountServiceJpa.lockAccount(account);
+    }
 
-        // save the transaction
-        accountServiceJpa.createAccount(sendingAccount);
-        accountServiceJpa.createAccount(receivingAccount);
+    // only money the user sends from his own accounts counts towards his daily limit
+    boolean isSpendByOwner(Transaction transaction) {
+        User initiator = transaction.getInitiator();
+        User owner = transaction.getFromAccount().getUser();
+        return initiator != null && owner != null && initiator.getId() != null
+                && initiator.getId().equals(owner.getId());
+    }
 
-        Transaction savedTransaction = transactionRepository.save(transaction);
+    public void addToDailySpend(User user, LocalDate date, BigDecimal amount) {
+        int updated = dailySpendRepository.addToTotal(user.getId(), date, amount);
+        if (updated == 0) {
+            createDailySpend(user, date, amount);
+        }
+    }
 
-        return Optional.of(savedTransaction);
+    // same as addToDailySpend, but the update only goes through when the new total stays below the daily limit
+    void addToDailySpendWithinLimit(User user, LocalDate date, BigDecimal amount) throws Exception {
+        int updated = dailySpendRepository.addToTotalWithinLimit(user.getId(), date, amount, user.getDailyLimit());
+        if (updated == 1) {
+            return;
+        }
+        if (dailySpendRepository.findByUserIdAndSpendDate(user.getId(), date).isPresent()) {
+            throw new Exception("daily limit reached");
+        }
+        reachedDailyTransferLimit(user, amount, BigDecimal.ZERO);
+        createDailySpend(user, date, amount);
+    }
 
+    // the total of the day, with the counter locked until commit so the caller can check many transfers
+    // against it in memory. a user without a counter yet gets one of 0 to hold the lock on
+    BigDecimal lockDailySpend(User user, LocalDate date) {
+        Optional<DailySpend> counter = dailySpendRepository.findByUserIdAndSpendDateForUpdate(user.getId(), date);
+        if (counter.isPresent()) {
+            return counter.get().getTotal();
+        }
+        createDailySpend(user, date, BigDecimal.ZERO);
+        return BigDecimal.ZERO;
+    }
+
+    // first transfer of the day for this user. flushed right away so a transfer that created the
+    // counter at the same time fails here and is retried, the update finds the row the next time
+    private void createDailySpend(User user, LocalDate date, BigDecimal amount) {
+        try {
+            dailySpendRepository.saveAndFlush(new DailySpend(null, user.getId(), date, amount));
+        } catch (DataIntegrityViolationException e) {
+            throw new ConcurrencyFailureException("daily spend counter was created by another transfer", e);
+        }
+    }
+
+    @Override
+    @Transactional
+    public void rebuildDailySpend() {
+        dailySpendRepository.deleteAllInBatch();
+
+        List<DailySpend> counters = new ArrayList<>();
+        for (Object[] row : transactionRepository.sumAmountPerInitiatorPerDay()) {
+            counters.add(new DailySpend(null, (Long) row[0], (LocalDate) row[1], (BigDecimal) row[2]));
+        }
+        dailySpendRepository.saveAll(counters);
     }
 
     // check if the transaction is whit local accounts
@@ -109,18 +334,11 @@ public class TransactionJpa implements TransactionService {
         if (date == null) {
             throw new IllegalArgumentException("date is null");
         }
-        List<Transaction> transactionsForUser = transactionRepository
-                .findByInitiatorIdOrderByCreatedAtAsc(user.getId()); // change this to a service method if we ever get
-                                                                     // one that retrieves all transactions for a single
-                                                                     // user
-        List<Transaction> filteredTransactions = transactionsForUser.stream()
-                .filter(t -> t.getCreatedAt().toLocalDate().equals(date.toLocalDate()))
-                .filter(t -> t.getFromAccount().getUser().getId().equals(user.getId()))
-                .toList();
 
-        return filteredTransactions.stream()
-                .map(Transaction::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        // read from the daily counter instead of summing the whole transaction history
+        return dailySpendRepository.findByUserIdAndSpendDate(user.getId(), date.toLocalDate())
+                .map(DailySpend::getTotal)
+                .orElse(BigDecimal.ZERO);
 
     }
 
@@ -147,6 +365,21 @@ public class TransactionJpa implements TransactionService {
         return transactionPage;
     }
 
+    @Override
+    public Window<Transaction> getTransactionsByCursor(TransactionFilter filter) {
+        if (filter == null) {
+            throw new IllegalArgumentException("No filter provided");
+        }
+        // decode the cursor first so a bad cursor is not wrapped in a data access exception
+        KeysetScrollPosition position = filter.toScrollPosition();
+        // scroll ignores entity graphs, so the associations toDTO needs are fetch joined in the specification
+        Specification<Transaction> spec = MakeTransactionsSpecification(filter).and(fetchForDTO());
+        return transactionRepository.findBy(spec, query -> query
+                .sortBy(BaseFilter.KEYSET_SORT)
+                .limit(filter.getPageSize())
+                .scroll(position));
+    }
+
     @Override
     public Optional<Transaction> getTransactionByFilter(TransactionFilter filter) {
         if (filter == null) {
@@ -187,6 +420,18 @@ public class TransactionJpa implements TransactionService {
         return updatedTransaction;
     }
 
+    public static Specification<Transaction> fetchForDTO() {
+        return (root, query, cb) -> {
+            // a count query can not have fetch joins
+            if (query.getResultType() != Long.class && query.getResultType() != long.class) {
+                root.fetch("initiator", JoinType.LEFT);
+                root.fetch("fromAccount", JoinType.LEFT);
+                root.fetch("toAccount", JoinType.LEFT);
+            }
+            return null;
+        };
+    }
+
     public static Specification<Transaction> MakeTransactionsSpecification(TransactionFilter filter) {
         return (root, query, cb) -> {
             List<Predicate> predicates = new ArrayList<>();
@@ -205,10 +450,10 @@ public class TransactionJpa implements TransactionService {
             }
 
             if (filter.getBeforeDate() != null) {
-                predicates.add(cb.lessThan(root.get("date"), filter.getBeforeDate()));
+                predicates.add(cb.lessThan(root.get("createdAt"), filter.getBeforeDate()));
             }
             if (filter.getAfterDate() != null) {
-                predicates.add(cb.greaterThan(root.get("date"), filter.getAfterDate()));
+                predicates.add(cb.greaterThan(root.get("createdAt"), filter.getAfterDate()));
             }
             return cb.and(predicates.toArray(new Predicate[0]));
         };
@@ -235,7 +480,8 @@ public class TransactionJpa implements TransactionService {
         TransactionDTOResponse transactionDTO = new TransactionDTOResponse();
         transactionDTO.setAmount(model.getAmount());
         transactionDTO.setCreatedAt(model.getCreatedAt());
-        transactionDTO.setInitiator(model.getInitiator().getId());
+        // old rows can be without initiator
+        transactionDTO.setInitiator(model.getInitiator() == null ? null : model.getInitiator().getId());
         transactionDTO.setSender(model.getFromAccount().getIban().toString());
         transactionDTO.setReceiver(model.getToAccount().getIban().toString());
         transactionDTO.setDescription(model.getDescription());
@@ -268,6 +514,12 @@ public class TransactionJpa implements TransactionService {
                                                                                        // amount of
                                                                                        // money spend
         // today
+        return reachedDailyTransferLimit(user, amount, totalSpendBeforeToday);
+    }
+
+    // same check for when the amount spend today is already known
+    public Boolean reachedDailyTransferLimit(User user, BigDecimal amount, BigDecimal totalSpendBeforeToday)
+            throws Exception {
         BigDecimal totalSpendToday = totalSpendBeforeToday.add(amount);
         BigDecimal dailyLimit = user.getDailyLimit(); // users daily limit
 
@@ -0,0 +1,177 @@
+package com.krachbank.api.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.krachbank.api.dto.BatchTransactionDTOResponse;
+import com.krachbank.api.dto.TransactionDTOResponse;
+import com.krachbank.api.models.Transaction;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+// every sending iban belongs to one partition and every partition has one virtual thread that writes,
+// so transfers from the same account never wait on each other for a lock and are applied in order.
+// the writer takes whatever is waiting in its queue (up to batch-size) and commits it in one go
+@Service
+public class TransactionPipelineImpl implements TransactionPipelineService {
+
+    // how often an idle writer looks if the pipeline was stopped
+    private static final long POLL_MILLIS = 100;
+
+    private final TransactionBatchService transactionBatchService;
+    private final boolean enabled;
+    private final int partitionCount;
+    private final int batchSize;
+    private final int queueCapacity;
+    private final Duration shutdownTimeout;
+
+    private final List<BlockingQueue<PendingTransfer>> partitions = new ArrayList<>();
+    private final List<Thread> writers = new ArrayList<>();
+    private volatile boolean running;
+
+    public TransactionPipelineImpl(TransactionBatchService transactionBatchService,
+            @Value("${application.transactions.pipeline.enabled:false}") boolean enabled,
+            @Value("${application.transactions.pipeline.partitions:8}") int partitionCount,
+            @Value("${application.transactions.pipeline.batch-size:32}") int batchSize,
+            @Value("${application.transactions.pipeline.queue-capacity:10000}") int queueCapacity,
+            @Value("${application.transactions.pipeline.shutdown-timeout:PT30S}") Duration shutdownTimeout) {
+        if (partitionCount < 1 || batchSize < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("pipeline partitions, batch-size and queue-capacity must be positive");
+        }
+        this.transactionBatchService = transactionBatchService;
+        this.enabled = enabled;
+        this.partitionCount = partitionCount;
+        this.batchSize = batchSize;
+        this.queueCapacity = queueCapacity;
+        this.shutdownTimeout = shutdownTimeout;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        for (int i = 0; i < partitionCount; i++) {
+            BlockingQueue<PendingTransfer> queue = new LinkedBlockingQueue<>(queueCapacity);
+            partitions.add(queue);
+            writers.add(Thread.ofVirtual().name("transfer-partition-" + i).start(() -> drain(queue)));
+        }
+    }
+
+    // new submits are turned away and the writers commit what is still in their queues. they are not
+    // interrupted, a writer can be in the middle of a commit
+    @PreDestroy
+    public void stop() {
+        running = false;
+        long deadline = System.nanoTime() + shutdownTimeout.toNanos();
+        for (Thread writer : writers) {
+            try {
+                long left = deadline - System.nanoTime();
+                if (left <= 0 || !writer.join(Duration.ofNanos(left))) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        // left after the timeout, a writer that is still busy only finishes its current batch
+        for (BlockingQueue<PendingTransfer> queue : partitions) {
+            PendingTransfer pending;
+            while ((pending = queue.poll()) != null) {
+                pending.future().completeExceptionally(new Exception("transfer pipeline is stopped"));
+            }
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public CompletableFuture<TransactionDTOResponse> submit(Transaction transaction) {
+        CompletableFuture<TransactionDTOResponse> future = new CompletableFuture<>();
+        if (!running) {
+            future.completeExceptionally(new Exception("transfer pipeline is not running"));
+            return future;
+        }
+        if (transaction == null || transaction.getFromAccount() == null
+                || transaction.getFromAccount().getIban() == null) {
+            future.completeExceptionally(new IllegalArgumentException("Sending account is required"));
+            return future;
+        }
+
+        BlockingQueue<PendingTransfer> queue = partitions.get(partitionOf(transaction));
+        PendingTransfer pending = new PendingTransfer(transaction, future);
+        if (!queue.offer(pending)) {
+            future.completeExceptionally(new Exception("too many transfers waiting, try again later"));
+        }
+        // stop() can have emptied the queue between the check above and the offer, nothing would complete it then.
+        // when it is still in the queue no writer took it, otherwise a writer or stop() completes it
+        if (!running && queue.remove(pending)) {
+            future.completeExceptionally(new Exception("transfer pipeline is stopped"));
+        }
+        return future;
+    }
+
+    int partitionOf(Transaction transaction) {
+        return Math.floorMod(transaction.getFromAccount().getIban().toString().hashCode(), partitionCount);
+    }
+
+    private void drain(BlockingQueue<PendingTransfer> queue) {
+        List<PendingTransfer> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            PendingTransfer first;
+            try {
+                first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (first == null) {
+                continue;
+            }
+            batch.add(first);
+            queue.drainTo(batch, batchSize - 1);
+            commit(batch);
+            batch.clear();
+        }
+    }
+
+    private void commit(List<PendingTransfer> batch) {
+        List<Transaction> transactions = new ArrayList<>(batch.size());
+        for (PendingTransfer pending : batch) {
+            transactions.add(pending.transaction());
+        }
+
+        try {
+            // one db transaction for the whole batch, a failing transfer only fails its own future
+            List<BatchTransactionDTOResponse> results = transactionBatchService.createTransactions(transactions);
+            for (int i = 0; i < batch.size(); i++) {
+                BatchTransactionDTOResponse result = results.get(i);
+                if (result.isSuccess()) {
+                    batch.get(i).future().complete(result.getTransaction());
+                } else {
+                    batch.get(i).future().completeExceptionally(new Exception(result.getError()));
+                }
+            }
+        } catch (Exception e) {
+            for (PendingTransfer pending : batch) {
+                pending.future().completeExceptionally(e);
+            }
+        }
+    }
+
+    private record PendingTransfer(Transaction transaction, CompletableFuture<TransactionDTOResponse> future) {
+    }
+}
@@ -0,0 +1,15 @@
+package com.krachbank.api.service;
+
+import java.util.concurrent.CompletableFuture;
+
+import com.krachbank.api.dto.TransactionDTOResponse;
+import com.krachbank.api.models.Transaction;
+
+public interface TransactionPipelineService {
+
+    // true when application.transactions.pipeline.enabled is set, otherwise transfers go through createTransaction
+    public boolean isEnabled();
+
+    // queues the transfer on the partition of the sending iban, the future completes when it is committed
+    public CompletableFuture<TransactionDTOResponse> submit(Transaction transaction);
+}
@@ -5,6 +5,7 @@ import java.time.LocalDateTime;
 import java.util.Optional;
 
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Window;
 
 import com.krachbank.api.dto.TransactionDTOResponse;
 import com.krachbank.api.filters.BaseFilter;
@@ -19,6 +20,11 @@ public interface TransactionService extends Service<TransactionDTOResponse, Tran
     @Transactional
     public Optional<Transaction> createTransaction(Transaction transaction) throws Exception;
 
+    // same as createTransaction, the response is stored under the key of the user in the same db transaction
+    @Transactional
+    public Optional<Transaction> createTransaction(Transaction transaction, Long userId, String idempotencyKey,
+            String requestHash) throws Exception;
+
     public Optional<Transaction> getTransactionById(Long id) throws Exception;
 
     public Optional<Transaction> getTransactionByFilter(TransactionFilter filter);
@@ -27,8 +33,15 @@ public interface TransactionService extends Service<TransactionDTOResponse, Tran
 
     public Page<Transaction> getAllTransactions(BaseFilter filter);
 
+    // keyset pagination on (createdAt, id), no offset scan and no count query
+    public Window<Transaction> getTransactionsByCursor(TransactionFilter filter);
+
     @Transactional
     public Optional<Transaction> updateTransaction(Long id, Transaction transaction) throws Exception;
 
     public BigDecimal getUserTotalAmountSpendAtDate(User user, LocalDateTime date);
+
+    // recalculates the daily spend counters from the transaction history
+    @Transactional
+    public void rebuildDailySpend();
 }
\ No newline at end of file
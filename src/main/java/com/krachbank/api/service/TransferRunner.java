@@ -0,0 +1,138 @@
+package com.krachbank.api.service;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+// runs a transfer in a db transaction of its own and runs it again when it lost a race with another
+// transfer: a stale @Version with optimistic locking, a lock timeout or a deadlock with the other modes.
+// between attempts it waits a random time up to a doubling backoff, so the losers do not collide again.
+// transactions.transfer (time including the retries), .conflicts and .retries are tagged with the locking
+// mode, run a while with each mode to see which one does better on the real load
+@Service
+public class TransferRunner {
+
+    public enum Locking {
+        // SELECT ... FOR UPDATE on both accounts, then check and write the balances
+        PESSIMISTIC,
+        // read both accounts without a lock, the @Version check on commit finds a race
+        OPTIMISTIC,
+        // no read and no lock, a conditional UPDATE for the debit and a plain one for the credit
+        CONDITIONAL
+    }
+
+    private final TransactionTemplate transactionTemplate;
+    private final Locking locking;
+    private final int maxAttempts;
+    private final long backoffNanos;
+    private final long maxBackoffNanos;
+    private final Timer transfers;
+    private final Counter conflicts;
+    private final Counter retries;
+
+    public TransferRunner(PlatformTransactionManager transactionManager,
+            @Value("${application.transactions.locking:conditional}") String locking,
+            @Value("${application.transactions.retry.max-attempts:3}") int maxAttempts,
+            @Value("${application.transactions.retry.backoff:PT0.01S}") Duration backoff,
+            @Value("${application.transactions.retry.max-backoff:PT0.2S}") Duration maxBackoff,
+            MeterRegistry meterRegistry) {
+        try {
+            this.locking = Locking.valueOf(locking.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Transaction locking must be pessimistic, optimistic or conditional");
+        }
+        if (maxAttempts <= 0) {
+            throw new IllegalArgumentException("Transfer attempts must be positive");
+        }
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        String mode = this.locking.name().toLowerCase(Locale.ROOT);
+        this.maxAttempts = maxAttempts;
+        this.backoffNanos = backoff.toNanos();
+        this.maxBackoffNanos = Math.max(backoffNanos, maxBackoff.toNanos());
+
+        this.transfers = Timer.builder("transactions.transfer").tag("locking", mode).register(meterRegistry);
+        this.conflicts = Counter.builder("transactions.transfer.conflicts").tag("locking", mode).register(meterRegistry);
+        this.retries = Counter.builder("transactions.transfer.retries").tag("locking", mode).register(meterRegistry);
+    }
+
+    public Locking getLocking() {
+        return locking;
+    }
+
+    // the transfer has to start from scratch every time, it runs again after a rollback.
+    // inside a transaction of the caller it runs once, a conflict there can only be retried by the caller.
+    // a failure still marks that transaction rollback only, a transfer never commits halfway
+    public <T> T run(Callable<T> transfer) throws Exception {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            try {
+                return transactionTemplate.execute(status -> call(transfer));
+            } catch (CheckedFailure e) {
+                throw e.getCause();
+            }
+        }
+        long start = System.nanoTime();
+        try {
+            for (int attempt = 1;; attempt++) {
+                try {
+                    return transactionTemplate.execute(status -> call(transfer));
+                } catch (CheckedFailure e) {
+                    throw e.getCause();
+                } catch (ConcurrencyFailureException e) {
+                    conflicts.increment();
+                    if (attempt >= maxAttempts) {
+                        throw e;
+                    }
+                    retries.increment();
+                    sleep(attempt);
+                }
+            }
+        } finally {
+            transfers.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // full jitter: anything between 0 and backoff * 2^(attempt - 1), capped at max-backoff
+    private void sleep(int attempt) throws InterruptedException {
+        long ceiling = Math.min(maxBackoffNanos, backoffNanos << Math.min(attempt - 1, 20));
+        if (ceiling <= 0) {
+            return;
+        }
+        long nanos = ThreadLocalRandom.current().nextLong(ceiling + 1);
+        Thread.sleep(nanos / 1_000_000, (int) (nanos % 1_000_000));
+    }
+
+    private static <T> T call(Callable<T> transfer) {
+        try {
+            return transfer.call();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            // rolls the transaction back like any other exception, unwrapped again in run
+            throw new CheckedFailure(e);
+        }
+    }
+
+    private static final class CheckedFailure extends RuntimeException {
+        private CheckedFailure(Exception cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized Exception getCause() {
+            return (Exception) super.getCause();
+        }
+    }
+}
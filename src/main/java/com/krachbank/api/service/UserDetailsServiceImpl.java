@@ -1,29 +1,87 @@
 package com.krachbank.api.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.krachbank.api.models.User;
 import com.krachbank.api.repository.AuthenticationRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import java.time.Duration;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import jakarta.transaction.Transactional;
 
 
 @Service
-public class UserDetailsServiceImpl implements UserDetailsService {
+public class UserDetailsServiceImpl implements UserDetailsService, UserDetailsPasswordService {
 
     private final AuthenticationRepository authenticationRepository;
 
+    // the jwt filter loads the user on every request, keep recent ones so that is not a query every time.
+    // UserServiceJpa evicts a user when it changes him, the ttl is only a safety net
+    private final Cache<String, User> principals;
+
     @Autowired
-    public UserDetailsServiceImpl(AuthenticationRepository authenticationRepository) {
+    public UserDetailsServiceImpl(AuthenticationRepository authenticationRepository,
+            @Value("${application.security.principal-cache.ttl:PT5M}") Duration timeToLive,
+            @Value("${application.security.principal-cache.size:10000}") long cacheSize,
+            MeterRegistry meterRegistry) {
         this.authenticationRepository = authenticationRepository;
+        this.principals = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(timeToLive)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, principals, "security.principals");
     }
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        // Retrieve the user from your repository
-        User user = authenticationRepository.findByUsername(username)
-                .orElseThrow(() -> new UsernameNotFoundException("User not found with username: " + username));
+        // Retrieve the user from your repository, unknown usernames are not cached
+        User user = principals.get(username, name -> authenticationRepository.findByUsername(name).orElse(null));
+        if (user == null) {
+            throw new UsernameNotFoundException("User not found with username: " + username);
+        }
         return user; // Your User model will implement UserDetails
     }
-}
\ No newline at end of file
+
+    // DaoAuthenticationProvider calls this after a login with a hash of a lower cost, newPassword is already hashed
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        if (authenticationRepository.updatePassword(user.getUsername(), newPassword) == 0) {
+            throw new UsernameNotFoundException("User not found with username: " + user.getUsername());
+        }
+        evict(user.getUsername());
+        return authenticationRepository.findByUsername(user.getUsername())
+                .orElseThrow(() -> new UsernameNotFoundException("User not found with username: " + user.getUsername()));
+    }
+
+    // drop the cached user now, and again after the commit when this runs inside a transaction,
+    // so a request in between can not put the old version back
+    public void evict(String username) {
+        if (username == null) {
+            return;
+        }
+        principals.invalidate(username);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    principals.invalidate(username);
+                }
+            });
+        }
+    }
+}
@@ -7,7 +7,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import com.krachbank.api.dto.DTO;
@@ -21,11 +22,19 @@ import jakarta.persistence.EntityNotFoundException;
 @Service
 public class UserServiceJpa implements UserService {
     private final UserRepository userRepository;
-    private final BCryptPasswordEncoder passwordEncoder;
-
-    public UserServiceJpa(UserRepository userRepository, BCryptPasswordEncoder passwordEncoder) {
+    private final PasswordEncoder passwordEncoder;
+    private final UserDetailsServiceImpl userDetailsService;
+    private final TokenVersionService tokenVersionService;
+    private final KnownUserService knownUserService;
+
+    public UserServiceJpa(UserRepository userRepository, PasswordEncoder passwordEncoder,
+            UserDetailsServiceImpl userDetailsService, TokenVersionService tokenVersionService,
+            KnownUserService knownUserService) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
+        this.userDetailsService = userDetailsService;
+        this.tokenVersionService = tokenVersionService;
+        this.knownUserService = knownUserService;
     }
 
     @Override
@@ -64,20 +73,31 @@ public class UserServiceJpa implements UserService {
             throw new IllegalArgumentException("BSN must be a positive number");
         }
 
-        return toDTO(userRepository.save(user));
+        if (user.getId() == null) {
+            throw new IllegalArgumentException("User id is required");
+        }
+
+        // the body is detached and can miss fields or carry an old version, so only the checked fields are copied
+        User existingUser = userRepository.findById(user.getId())
+                .orElseThrow(() -> new EntityNotFoundException("User not found with ID: " + user.getId()));
+        existingUser.setEmail(user.getEmail());
+        existingUser.setFirstName(user.getFirstName());
+        existingUser.setLastName(user.getLastName());
+        existingUser.setBSN(user.getBSN());
+        existingUser.setVerified(user.isVerified());
+
+        User verifiedUser = userRepository.save(existingUser);
+        // the cached principal is stale now
+        userDetailsService.evict(verifiedUser.getUsername());
+        return toDTO(verifiedUser);
     }
 
     @Override
     public UserDTO createUser(UserDTO userDTO) {
         // --- Validation for existing user (based on email and username) ---
-        if (userRepository.findByEmail(userDTO.getEmail()).isPresent()) {
-            throw new RuntimeException("User with email " + userDTO.getEmail() + " already exists!");
-        }
-        // This check is important if username is "First Last" and needs to be unique.
-        // It will throw if a user with that exact first and last name combination already exists.
-        if (userDTO.getUsername() != null && userRepository.findByUsername(userDTO.getUsername()).isPresent()) {
-            throw new RuntimeException("User with username " + userDTO.getUsername() + " already exists!");
-        }
+        // only a query when the username or email might be taken, and before the expensive password hash.
+        // the unique constraints catch the rest, like two sign-ups at the same time
+        knownUserService.checkAvailable(userDTO.getUsername(), userDTO.getEmail());
 
         // --- Convert UserDTO to User entity ---
         User user = new User();
@@ -99,7 +119,13 @@ public class UserServiceJpa implements UserService {
         // user.setTransferLimit(0.0); // Set a default transfer limit, if you have this field in User entity
 
         // --- Save the User entity to the database ---
-        User savedUser = userRepository.save(user);
+        User savedUser;
+        try {
+            savedUser = userRepository.saveAndFlush(user);
+        } catch (DataIntegrityViolationException e) {
+            throw knownUserService.toUserAlreadyExists(e, user.getUsername(), user.getEmail());
+        }
+        knownUserService.registered(savedUser.getUsername(), savedUser.getEmail());
 
         // --- Debugging Print (can remove after successful testing) ---
 
@@ -111,6 +137,8 @@ public class UserServiceJpa implements UserService {
     public UserDTO updateUser(Long id, User userDetails) {
         User existingUser = userRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException("User not found with ID: " + id));
+        String oldUsername = existingUser.getUsername();
+        boolean wasActive = existingUser.isActive();
 
         // Update the fields of the existing user with new details
         existingUser.setFirstName(userDetails.getFirstName());
@@ -125,6 +153,14 @@ public class UserServiceJpa implements UserService {
 
         // Save the updated entity
         User updatedUser = userRepository.save(existingUser);
+        // the cached principal is stale now, under the old and the new username
+        userDetailsService.evict(oldUsername);
+        userDetailsService.evict(updatedUser.getUsername());
+        knownUserService.registered(updatedUser.getUsername(), updatedUser.getEmail());
+        // the username and active flag are claims in the token, old tokens would still carry the old ones
+        if (!updatedUser.getUsername().equals(oldUsername) || updatedUser.isActive() != wasActive) {
+            tokenVersionService.revokeTokens(updatedUser.getId());
+        }
 
         // USE UserDTO.fromModel() for consistent conversion
         return toDTO(updatedUser); // <--- CHANGED HERE
@@ -136,6 +172,9 @@ public class UserServiceJpa implements UserService {
                 .orElseThrow(() -> new EntityNotFoundException("User not found with ID: " + id));
         user.setActive(false);
         User deactivatedUser = userRepository.save(user);
+        // locked out from the next request on, not when the cache entry expires
+        userDetailsService.evict(deactivatedUser.getUsername());
+        tokenVersionService.revokeTokens(deactivatedUser.getId());
         // USE UserDTO.fromModel() for consistent conversion
         return toDTO(deactivatedUser); // <--- CHANGED HERE
     }
@@ -5,33 +5,42 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.util.List;
 
 import org.iban4j.Iban;
 import org.iban4j.Iban4jException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
 import org.springframework.http.ResponseEntity;
-import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.WebAsyncUtils;
 
 import com.krachbank.api.dto.TransactionDTOResponse;
+import com.krachbank.api.filters.BaseFilter;
 import com.krachbank.api.filters.TransactionFilter;
 import com.krachbank.api.models.Account;
+import com.krachbank.api.models.IdempotencyKey;
 import com.krachbank.api.models.Transaction;
 import com.krachbank.api.models.User;
 import com.krachbank.api.service.AccountService;
+import com.krachbank.api.service.IdempotencyService;
+import com.krachbank.api.service.TransactionBatchService;
+import com.krachbank.api.service.TransactionExportService;
+import com.krachbank.api.service.TransactionPipelineService;
 import com.krachbank.api.service.TransactionService;
 
-@WebMvcTest(TransactionController.class)
+// the controller methods are called directly, no web context
+@ExtendWith(MockitoExtension.class)
 public class TransactionControllerTest {
 
-    @Autowired
-    private MockMvc mockMvc;
-
     private Transaction fullTransaction;
     private TransactionController transactionController;
 
@@ -41,11 +50,25 @@ public class TransactionControllerTest {
     @Mock
     private AccountService accountService;
 
+    @Mock
+    private TransactionBatchService transactionBatchService;
+
+    @Mock
+    private IdempotencyService idempotencyService;
+
+    @Mock
+    private TransactionPipelineService transactionPipelineService;
+
+    @Mock
+    private TransactionExportService transactionExportService;
+
     @BeforeEach
     void setUp() {
         // Mock or instantiate dependencies as needed
 
-        transactionController = new TransactionController(transactionService, accountService);
+        transactionController = new TransactionController(transactionService, accountService, transactionBatchService,
+                idempotencyService, transactionPipelineService, transactionExportService, Duration.ofHours(1),
+                Duration.ofMillis(100));
 
         // Create a mock initiator (User)
         User initiator = new User();
@@ -80,6 +103,10 @@ public class TransactionControllerTest {
         dto.setSender(fullTransaction.getFromAccount().getIban().toString());
         dto.setReceiver(fullTransaction.getToAccount().getIban().toString());
         dto.setDescription(fullTransaction.getDescription());
+        org.mockito.Mockito.when(accountService.getAccountReferenceByIBAN(dto.getSender()))
+                .thenReturn(fullTransaction.getFromAccount());
+        org.mockito.Mockito.when(accountService.getAccountReferenceByIBAN(dto.getReceiver()))
+                .thenReturn(fullTransaction.getToAccount());
 
         Transaction transaction = transactionController.toModel(dto);
 
@@ -99,6 +126,8 @@ public class TransactionControllerTest {
     void testToModelWithNullFields() {
         TransactionDTOResponse dto = new TransactionDTOResponse();
         // Only set initiator from setup
+        org.mockito.Mockito.when(accountService.getAccountReferenceByIBAN(null))
+                .thenThrow(org.iban4j.IbanFormatException.class);
         assertThrows(Iban4jException.class, () -> transactionController.toModel(dto));
 
     }
@@ -111,11 +140,12 @@ public class TransactionControllerTest {
     @Test
     void testGetTransactionsReturnsOkWithTransactions() {
         TransactionFilter filter = new TransactionFilter();
-        Page<Transaction> transactions = new org.springframework.data.domain.PageImpl<>(List.of(fullTransaction));
+        fullTransaction.setId(7L);
+        Window<Transaction> transactions = Window.from(List.of(fullTransaction), i -> ScrollPosition.keyset(), true);
         List<TransactionDTOResponse> transactionDTOs = List.of(new TransactionDTOResponse());
 
         // Mock service behavior
-        org.mockito.Mockito.when(transactionService.getTransactionsByFilter(filter)).thenReturn(transactions);
+        org.mockito.Mockito.when(transactionService.getTransactionsByCursor(filter)).thenReturn(transactions);
         org.mockito.Mockito.when(transactionService.toDTO(transactions.getContent())).thenReturn(transactionDTOs);
 
         ResponseEntity<?> response = transactionController.getTransactions(filter);
@@ -123,14 +153,33 @@ public class TransactionControllerTest {
         assertNotNull(response);
         assertEquals(200, response.getStatusCodeValue());
         assertEquals(transactionDTOs, response.getBody());
+        assertEquals(BaseFilter.toCursor(fullTransaction.getCreatedAt(), 7L),
+                response.getHeaders().getFirst(Controller.NEXT_CURSOR_HEADER));
     }
 
     @Test
-    void testGetTransactionsReturnsNullWhenEmpty() {
+    void testGetTransactionsWithPageUsesOffsetPaging() {
         TransactionFilter filter = new TransactionFilter();
-        org.springframework.data.domain.Page<Transaction> transactions = new org.springframework.data.domain.PageImpl<>(List.of());
+        filter.setPage(2);
+        Page<Transaction> transactions = new org.springframework.data.domain.PageImpl<>(List.of(fullTransaction));
+        List<TransactionDTOResponse> transactionDTOs = List.of(new TransactionDTOResponse());
 
         org.mockito.Mockito.when(transactionService.getTransactionsByFilter(filter)).thenReturn(transactions);
+        org.mockito.Mockito.when(transactionService.toDTO(transactions.getContent())).thenReturn(transactionDTOs);
+
+        ResponseEntity<?> response = transactionController.getTransactions(filter);
+
+        assertEquals(200, response.getStatusCodeValue());
+        assertEquals(transactionDTOs, response.getBody());
+        assertEquals(null, response.getHeaders().getFirst(Controller.NEXT_CURSOR_HEADER));
+    }
+
+    @Test
+    void testGetTransactionsReturnsNullWhenEmpty() {
+        TransactionFilter filter = new TransactionFilter();
+        Window<Transaction> transactions = Window.from(List.of(), i -> ScrollPosition.keyset());
+
+        org.mockito.Mockito.when(transactionService.getTransactionsByCursor(filter)).thenReturn(transactions);
 
         ResponseEntity<?> response = transactionController.getTransactions(filter);
 
@@ -138,12 +187,27 @@ public class TransactionControllerTest {
         assertEquals(null, response);
     }
 
+    @Test
+    void testGetTransactionsWithInvalidCursorIsABadRequest() {
+        TransactionFilter filter = new TransactionFilter();
+        filter.setCursor("tampered");
+
+        // what the service gets from BaseFilter.toScrollPosition
+        org.mockito.Mockito.when(transactionService.getTransactionsByCursor(filter))
+            .thenThrow(new IllegalArgumentException("Invalid cursor"));
+
+        ResponseEntity<?> response = transactionController.getTransactions(filter);
+
+        assertEquals(400, response.getStatusCode().value());
+        assertEquals("Invalid cursor", response.getBody());
+    }
+
     @Test
     void testGetTransactionsHandlesException() {
         TransactionFilter filter = new TransactionFilter();
         String errorMessage = "Database error";
 
-        org.mockito.Mockito.when(transactionService.getTransactionsByFilter(filter))
+        org.mockito.Mockito.when(transactionService.getTransactionsByCursor(filter))
             .thenThrow(new RuntimeException(errorMessage));
 
         ResponseEntity<?> response = transactionController.getTransactions(filter);
@@ -152,4 +216,117 @@ public class TransactionControllerTest {
         assertEquals(500, response.getStatusCodeValue());
         assertEquals(errorMessage, response.getBody());
     }
+
+    @Test
+    void testCreateTransactionWithoutKeyDoesNotLookUpAStoredResponse() throws Exception {
+        TransactionDTOResponse dto = new TransactionDTOResponse();
+        dto.setAmount(fullTransaction.getAmount());
+        org.mockito.Mockito.when(transactionService.createTransaction(org.mockito.ArgumentMatchers.any()))
+                .thenThrow(new org.springframework.dao.DataIntegrityViolationException("duplicate"));
+
+        ResponseEntity<?> response = transactionController.createTransaction(null, null, dto);
+
+        assertEquals(500, response.getStatusCode().value());
+        org.mockito.Mockito.verifyNoInteractions(idempotencyService);
+    }
+
+    private User principal(long id) {
+        User user = new User();
+        user.setId(id);
+        return user;
+    }
+
+    @Test
+    void testCreateTransactionWithKeyNeedsAUser() {
+        ResponseEntity<?> response = transactionController.createTransaction("key-1", null, new TransactionDTOResponse());
+
+        assertEquals(400, response.getStatusCode().value());
+        org.mockito.Mockito.verifyNoInteractions(idempotencyService, transactionService);
+    }
+
+    @Test
+    void testCreateTransactionReplaysTheSameRequest() {
+        TransactionDTOResponse dto = new TransactionDTOResponse();
+        org.mockito.Mockito.when(idempotencyService.requestHash(dto)).thenReturn("hash");
+        org.mockito.Mockito.when(idempotencyService.getResponse(1L, "key-1"))
+                .thenReturn(java.util.Optional.of(new IdempotencyKey(null, 1L, "key-1", "hash", 200, "{}", null, null)));
+
+        ResponseEntity<?> response = transactionController.createTransaction("key-1", principal(1L), dto);
+
+        assertEquals(200, response.getStatusCode().value());
+        assertEquals("{}", response.getBody());
+        org.mockito.Mockito.verifyNoInteractions(transactionService);
+    }
+
+    @Test
+    void testCreateTransactionRefusesAKeyUsedForADifferentRequest() {
+        TransactionDTOResponse dto = new TransactionDTOResponse();
+        org.mockito.Mockito.when(idempotencyService.requestHash(dto)).thenReturn("other");
+        org.mockito.Mockito.when(idempotencyService.getResponse(1L, "key-1"))
+                .thenReturn(java.util.Optional.of(new IdempotencyKey(null, 1L, "key-1", "hash", 200, "{}", null, null)));
+
+        ResponseEntity<?> response = transactionController.createTransaction("key-1", principal(1L), dto);
+
+        assertEquals(422, response.getStatusCode().value());
+        org.mockito.Mockito.verifyNoInteractions(transactionService);
+    }
+
+    @Test
+    void testCreateTransactionOnlyLooksAtTheKeysOfTheCaller() throws Exception {
+        TransactionDTOResponse dto = new TransactionDTOResponse();
+        org.mockito.Mockito.when(idempotencyService.requestHash(dto)).thenReturn("hash");
+        org.mockito.Mockito.when(idempotencyService.getResponse(2L, "key-1")).thenReturn(java.util.Optional.empty());
+        org.mockito.Mockito.when(transactionService.createTransaction(org.mockito.ArgumentMatchers.any(),
+                org.mockito.ArgumentMatchers.eq(2L), org.mockito.ArgumentMatchers.eq("key-1"),
+                org.mockito.ArgumentMatchers.eq("hash")))
+                .thenReturn(java.util.Optional.of(fullTransaction));
+
+        ResponseEntity<?> response = transactionController.createTransaction("key-1", principal(2L), dto);
+
+        // the key of user 1 is never looked at, so the transfer of user 2 really runs
+        assertEquals(200, response.getStatusCode().value());
+        org.mockito.Mockito.verify(idempotencyService, org.mockito.Mockito.never())
+                .getResponse(org.mockito.ArgumentMatchers.eq(1L), org.mockito.ArgumentMatchers.any());
+    }
+
+    @Test
+    void testCreateTransactionDoesNotWaitForThePipelineForever() {
+        org.mockito.Mockito.when(transactionPipelineService.isEnabled()).thenReturn(true);
+        org.mockito.Mockito.when(transactionPipelineService.submit(org.mockito.ArgumentMatchers.any()))
+                .thenReturn(new java.util.concurrent.CompletableFuture<>());
+
+        ResponseEntity<?> response = transactionController.createTransaction(null, null, new TransactionDTOResponse());
+
+        assertEquals(500, response.getStatusCode().value());
+        assertEquals("transfer is still waiting in the pipeline, check the transactions before retrying",
+                response.getBody());
+    }
+
+    @Test
+    void testExportTransactionsRejectsUnknownFormat() {
+        ResponseEntity<?> response = transactionController.exportTransactions("xml", null, null,
+                new MockHttpServletRequest());
+
+        assertEquals(400, response.getStatusCode().value());
+        org.mockito.Mockito.verifyNoInteractions(transactionExportService);
+    }
+
+    @Test
+    void testExportTransactionsStreamsCsv() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        AsyncWebRequest asyncWebRequest = org.mockito.Mockito.mock(AsyncWebRequest.class);
+        WebAsyncUtils.getAsyncManager(request).setAsyncWebRequest(asyncWebRequest);
+
+        ResponseEntity<?> response = transactionController.exportTransactions("csv", null, null, request);
+
+        assertEquals(200, response.getStatusCode().value());
+        assertEquals("text/csv", response.getHeaders().getContentType().toString());
+
+        java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+        ((org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody) response.getBody())
+                .writeTo(out);
+        org.mockito.Mockito.verify(transactionExportService).exportTransactions(null, null, "csv", out);
+        // only the export gets the long timeout
+        org.mockito.Mockito.verify(asyncWebRequest).setTimeout(Duration.ofHours(1).toMillis());
+    }
 }
@@ -0,0 +1,48 @@
+package com.krachbank.api.converters;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.iban4j.Iban;
+import org.iban4j.Iban4jException;
+import org.junit.jupiter.api.Test;
+
+public class IbanConverterTest {
+
+    private final IbanConverter converter = new IbanConverter();
+
+    @Test
+    void testPrivateIbanConstructorIsStillThere() {
+        // without it every loaded row is validated again, the rows still load so nothing else would notice
+        assertNotNull(IbanConverter.TRUSTED_IBAN, "iban4j has no private Iban(String) constructor anymore");
+    }
+
+    @Test
+    void testNormalizedIbanIsNotValidated() {
+        // wrong check digits, Iban.valueOf would throw on this
+        Iban iban = converter.convertToEntityAttribute("NL00ABNA0417164300");
+
+        assertEquals("NL00ABNA0417164300", iban.toString());
+    }
+
+    @Test
+    void testIbanNotWrittenByUsIsNormalized() {
+        Iban iban = converter.convertToEntityAttribute("nl91 abna 0417 1643 00");
+
+        assertEquals(Iban.valueOf("NL91ABNA0417164300"), iban);
+        assertEquals("NL91ABNA0417164300", converter.convertToDatabaseColumn(iban));
+    }
+
+    @Test
+    void testInvalidIbanNotWrittenByUsIsRejected() {
+        assertThrows(Iban4jException.class, () -> converter.convertToEntityAttribute("nl00 abna 0417 1643 00"));
+    }
+
+    @Test
+    void testNullStaysNull() {
+        assertNull(converter.convertToEntityAttribute(null));
+        assertNull(converter.convertToDatabaseColumn(null));
+    }
+}
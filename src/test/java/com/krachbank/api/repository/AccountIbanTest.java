@@ -0,0 +1,105 @@
+package com.krachbank.api.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import org.iban4j.Iban;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.krachbank.api.configuration.IBANGenerator;
+import com.krachbank.api.models.Account;
+import com.krachbank.api.models.AccountType;
+import com.krachbank.api.models.User;
+
+// findByIban has to use the unique index, and an iban read back from the column is the same as the one written
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class AccountIbanTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        accountRepository.deleteAll();
+        userRepository.deleteAll();
+
+        user = new User();
+        user.setUsername("iban");
+        user.setPassword("secret");
+        user.setEmail("iban@example.com");
+        user.setCreatedAt(LocalDateTime.now());
+        userRepository.save(user);
+    }
+
+    private Account createAccount(Iban iban) {
+        Account account = new Account();
+        account.setIban(iban);
+        account.setUser(user);
+        account.setAccountType(AccountType.CHECKING);
+        account.setBalance(BigDecimal.ZERO);
+        account.setAbsoluteLimit(BigDecimal.ZERO);
+        account.setCreatedAt(LocalDateTime.now());
+        return account;
+    }
+
+    @Test
+    void testIbanIsReadBackUnchanged() {
+        Iban iban = IBANGenerator.generateIBAN();
+        accountRepository.save(createAccount(iban));
+
+        Iban loaded = accountRepository.findByIban(iban).orElseThrow().getIban();
+
+        assertEquals(iban, loaded);
+        assertEquals(iban.getBankCode(), loaded.getBankCode());
+        assertEquals(iban.getAccountNumber(), loaded.getAccountNumber());
+        assertEquals(iban.toFormattedString(), loaded.toFormattedString());
+    }
+
+    @Test
+    void testIbanFromTheColumnIsNotValidatedAgain() {
+        Account account = accountRepository.save(createAccount(IBANGenerator.generateIBAN()));
+        // wrong check digits, Iban.valueOf would throw on this
+        jdbcTemplate.update("UPDATE account SET iban = 'NL00ABNA0417164300' WHERE id = ?", account.getId());
+
+        assertEquals("NL00ABNA0417164300", accountRepository.findById(account.getId()).orElseThrow().getIban().toString());
+    }
+
+    @Test
+    void testDuplicateIbanIsRejected() {
+        Iban iban = IBANGenerator.generateIBAN();
+        accountRepository.save(createAccount(iban));
+
+        DataIntegrityViolationException e = assertThrows(DataIntegrityViolationException.class,
+                () -> accountRepository.saveAndFlush(createAccount(iban)));
+        assertTrue(e.getMostSpecificCause().getMessage().toLowerCase().contains(Account.IBAN_CONSTRAINT));
+    }
+
+    @Test
+    void testLookupByIbanUsesIndex() {
+        String plan = String.join("\n", jdbcTemplate.queryForList(
+                "EXPLAIN SELECT a.id FROM account a WHERE a.iban = 'NL91ABNA0417164300'", String.class))
+                .toUpperCase();
+
+        assertTrue(plan.contains(Account.IBAN_CONSTRAINT.toUpperCase()), plan);
+    }
+}
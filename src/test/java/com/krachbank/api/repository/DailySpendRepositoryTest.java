@@ -0,0 +1,100 @@
+package com.krachbank.api.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import com.krachbank.api.models.Account;
+import com.krachbank.api.models.DailySpend;
+import com.krachbank.api.models.Transaction;
+import com.krachbank.api.models.User;
+
+@DataJpaTest
+public class DailySpendRepositoryTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private DailySpendRepository dailySpendRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private User user;
+    private Account fromAccount;
+    private Account toAccount;
+
+    @BeforeEach
+    void setUp() {
+        user = new User();
+        user.setUsername("alice");
+        user.setPassword("secret");
+        user.setEmail("alice@example.com");
+        user.setCreatedAt(LocalDateTime.now());
+        userRepository.save(user);
+
+        fromAccount = new Account();
+        fromAccount.setUser(user);
+        fromAccount.setBalance(BigDecimal.valueOf(1000));
+        toAccount = new Account();
+        toAccount.setUser(user);
+        toAccount.setBalance(BigDecimal.valueOf(1000));
+        accountRepository.save(fromAccount);
+        accountRepository.save(toAccount);
+    }
+
+    private void saveTransaction(String amount, LocalDateTime createdAt) {
+        Transaction transaction = new Transaction();
+        transaction.setAmount(new BigDecimal(amount));
+        transaction.setCreatedAt(createdAt);
+        transaction.setInitiator(user);
+        transaction.setFromAccount(fromAccount);
+        transaction.setToAccount(toAccount);
+        transactionRepository.save(transaction);
+    }
+
+    @Test
+    void testAddToTotalUpdatesOnlyMatchingDay() {
+        LocalDate today = LocalDate.of(2025, 1, 2);
+        dailySpendRepository.save(new DailySpend(null, user.getId(), today, new BigDecimal("10.00")));
+
+        assertEquals(1, dailySpendRepository.addToTotal(user.getId(), today, new BigDecimal("5.00")));
+        assertEquals(0, dailySpendRepository.addToTotal(user.getId(), today.plusDays(1), new BigDecimal("5.00")));
+        entityManager.clear();
+
+        DailySpend counter = dailySpendRepository.findByUserIdAndSpendDate(user.getId(), today).get();
+        assertEquals(0, new BigDecimal("15.00").compareTo(counter.getTotal()));
+    }
+
+    @Test
+    void testSumAmountPerInitiatorPerDayGroupsByDay() {
+        saveTransaction("100.00", LocalDateTime.of(2025, 1, 1, 9, 0));
+        saveTransaction("50.00", LocalDateTime.of(2025, 1, 1, 23, 30));
+        saveTransaction("25.00", LocalDateTime.of(2025, 1, 2, 8, 0));
+
+        List<Object[]> rows = transactionRepository.sumAmountPerInitiatorPerDay();
+
+        assertEquals(2, rows.size());
+        assertTrue(rows.stream().anyMatch(row -> row[1].equals(LocalDate.of(2025, 1, 1))
+                && new BigDecimal("150.00").compareTo((BigDecimal) row[2]) == 0));
+        assertTrue(rows.stream().anyMatch(row -> row[1].equals(LocalDate.of(2025, 1, 2))
+                && new BigDecimal("25.00").compareTo((BigDecimal) row[2]) == 0));
+    }
+}
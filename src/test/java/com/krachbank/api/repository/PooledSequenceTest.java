@@ -0,0 +1,99 @@
+package com.krachbank.api.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.krachbank.api.models.User;
+
+import jakarta.persistence.EntityManagerFactory;
+
+// ids come in blocks from the sequence, so a bulk insert is a few sequence calls and one jdbc batch
+@DataJpaTest
+@TestPropertySource(properties = {
+        "spring.jpa.properties.application.id.allocation-size=20",
+        "spring.jpa.properties.hibernate.generate_statistics=true" })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class PooledSequenceTest {
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private DailySpendRepository dailySpendRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @BeforeEach
+    void setUp() {
+        idempotencyKeyRepository.deleteAll();
+        transactionRepository.deleteAll();
+        dailySpendRepository.deleteAll();
+        accountRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void testSequencesUseTheConfiguredAllocationSize() {
+        for (String sequence : List.of("USERS_SEQ", "ACCOUNT_SEQ", "TRANSACTION_SEQ", "DAILY_SPEND_SEQ",
+                "IDEMPOTENCY_KEYS_SEQ")) {
+            assertEquals(20, jdbcTemplate.queryForObject(
+                    "SELECT INCREMENT FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = ?", Long.class, sequence));
+        }
+    }
+
+    @Test
+    void testBulkUserInsertIsBatched() {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 45; i++) {
+            User user = new User();
+            user.setUsername("pooled" + i);
+            user.setPassword("secret");
+            user.setEmail("pooled" + i + "@example.com");
+            user.setCreatedAt(LocalDateTime.now());
+            user.setDailyLimit(BigDecimal.TEN);
+            users.add(user);
+        }
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        transactionTemplate.executeWithoutResult(status -> userRepository.saveAll(users));
+
+        // 3 sequence calls for 45 ids and the inserts in one batch, an identity column needs 45 statements
+        assertTrue(statistics.getPrepareStatementCount() <= 5,
+                "statements: " + statistics.getPrepareStatementCount());
+        assertEquals(45, users.stream().map(User::getId).distinct().count());
+    }
+}
@@ -0,0 +1,175 @@
+package com.krachbank.api.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.krachbank.api.configuration.IBANGenerator;
+import com.krachbank.api.filters.TransactionFilter;
+import com.krachbank.api.models.Account;
+import com.krachbank.api.models.AccountType;
+import com.krachbank.api.models.User;
+import com.krachbank.api.service.TransactionJpa;
+
+// the searches of TransactionJpa.MakeTransactionsSpecification have to hit an index instead of scanning the table
+// ANALYZE commits in h2, so this test does not run inside a rolled back test transaction.
+// the plans are of the sql hibernate generates for the specification, caught by the statement inspector
+@DataJpaTest
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "com.krachbank.api.repository.TransactionSearchIndexTest$RecordingStatementInspector")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class TransactionSearchIndexTest {
+
+    private static final int ACCOUNTS = 20;
+    private static final int TRANSACTIONS = 5000;
+    private static final LocalDateTime START = LocalDateTime.of(2025, 1, 1, 0, 0);
+    private static final int PAGE_SIZE = 20;
+
+    // hibernate makes its own instance, so the statements are kept in a static list
+    public static class RecordingStatementInspector implements StatementInspector {
+
+        static final List<String> STATEMENTS = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public String inspect(String sql) {
+            STATEMENTS.add(sql);
+            return sql;
+        }
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private User user;
+    private List<Account> accounts;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM transaction");
+        accountRepository.deleteAll();
+        userRepository.deleteAll();
+
+        user = new User();
+        user.setUsername("search");
+        user.setPassword("secret");
+        user.setEmail("search@example.com");
+        user.setCreatedAt(LocalDateTime.now());
+        userRepository.save(user);
+
+        accounts = new ArrayList<>();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            Account account = new Account();
+            account.setIban(IBANGenerator.generateIBAN());
+            account.setUser(user);
+            account.setAccountType(AccountType.CHECKING);
+            account.setBalance(BigDecimal.ZERO);
+            account.setAbsoluteLimit(BigDecimal.ZERO);
+            account.setCreatedAt(LocalDateTime.now());
+            accounts.add(accountRepository.save(account));
+        }
+
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 1; i <= TRANSACTIONS; i++) {
+            rows.add(new Object[] { -(long) i, BigDecimal.ONE, Timestamp.valueOf(START.plusHours(i)), user.getId(),
+                    accounts.get(i % ACCOUNTS).getId(), accounts.get((i + 1) % ACCOUNTS).getId() });
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO transaction "
+                + "(id, amount, created_at, initiator_id, from_account_id, to_account_id) VALUES (?, ?, ?, ?, ?, ?)",
+                rows);
+        // give the h2 optimizer real row counts
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    // runs the search like TransactionJpa.getTransactionsByFilter and explains the select of the page.
+    // the parameters are the values of the filter in the order of the predicates, then the page size
+    private String explain(TransactionFilter filter, Object... parameters) {
+        RecordingStatementInspector.STATEMENTS.clear();
+        transactionRepository.findAll(TransactionJpa.MakeTransactionsSpecification(filter), filter.toPageAble());
+        String sql = RecordingStatementInspector.STATEMENTS.stream()
+                .filter(statement -> statement.startsWith("select") && !statement.contains("count("))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("no select for the page"));
+
+        List<Object> values = new ArrayList<>(List.of(parameters));
+        values.add(PAGE_SIZE);
+        return String.join("\n", jdbcTemplate.queryForList("EXPLAIN " + sql, String.class, values.toArray()))
+                .toUpperCase();
+    }
+
+    private TransactionFilter filter() {
+        TransactionFilter filter = new TransactionFilter();
+        filter.setLimit(PAGE_SIZE);
+        return filter;
+    }
+
+    @Test
+    void testSearchOnSendingAccountAndDateUsesIndex() {
+        TransactionFilter filter = filter();
+        filter.setSenderId(accounts.get(3).getId());
+        filter.setAfterDate(LocalDateTime.of(2025, 2, 1, 0, 0));
+
+        String plan = explain(filter, filter.getSenderId(), Timestamp.valueOf(filter.getAfterDate()));
+
+        assertTrue(plan.contains("IDX_TRANSACTION_FROM_ACCOUNT_CREATED_AT"), plan);
+    }
+
+    @Test
+    void testSearchOnReceivingAccountAndDateUsesIndex() {
+        TransactionFilter filter = filter();
+        filter.setReceiverId(accounts.get(3).getId());
+        filter.setBeforeDate(LocalDateTime.of(2025, 2, 1, 0, 0));
+
+        String plan = explain(filter, filter.getReceiverId(), Timestamp.valueOf(filter.getBeforeDate()));
+
+        assertTrue(plan.contains("IDX_TRANSACTION_TO_ACCOUNT_CREATED_AT"), plan);
+    }
+
+    @Test
+    void testSearchOnDateOnlyUsesIndex() {
+        TransactionFilter filter = filter();
+        filter.setAfterDate(LocalDateTime.of(2025, 6, 1, 0, 0));
+        filter.setBeforeDate(LocalDateTime.of(2025, 6, 2, 0, 0));
+
+        String plan = explain(filter, Timestamp.valueOf(filter.getBeforeDate()),
+                Timestamp.valueOf(filter.getAfterDate()));
+
+        assertTrue(plan.contains("IDX_TRANSACTION_CREATED_AT_ID"), plan);
+    }
+
+    @Test
+    void testSearchFiltersOnCreatedAt() {
+        TransactionFilter filter = new TransactionFilter();
+        filter.setSenderId(accounts.get(3).getId());
+        filter.setAfterDate(START);
+        filter.setBeforeDate(START.plusHours(201));
+
+        // hours 3, 23, 43 ... 183 belong to account 3
+        assertEquals(10, transactionRepository.findAll(TransactionJpa.MakeTransactionsSpecification(filter)).size());
+    }
+}
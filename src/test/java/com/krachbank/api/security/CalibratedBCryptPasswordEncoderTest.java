@@ -0,0 +1,31 @@
+package com.krachbank.api.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+public class CalibratedBCryptPasswordEncoderTest {
+
+    @Test
+    void testOnlyHashesWithALowerCostNeedAnUpgrade() {
+        CalibratedBCryptPasswordEncoder encoder = new CalibratedBCryptPasswordEncoder(5);
+
+        assertFalse(encoder.upgradeEncoding(encoder.encode("secret")));
+        assertTrue(encoder.upgradeEncoding(new CalibratedBCryptPasswordEncoder(4).encode("secret")));
+        // a node that calibrated higher hashed this one, rehashing it here would only make it weaker
+        assertFalse(encoder.upgradeEncoding(new CalibratedBCryptPasswordEncoder(6).encode("secret")));
+        assertFalse(encoder.upgradeEncoding("plain-text"));
+    }
+
+    @Test
+    void testCalibrationStaysBetweenMinAndMax() {
+        // nothing fits in no time at all, still never below the minimum
+        assertEquals(4, CalibratedBCryptPasswordEncoder.calibrate(Duration.ZERO, 4, 6));
+        // everything fits in a minute, capped at the maximum
+        assertEquals(6, CalibratedBCryptPasswordEncoder.calibrate(Duration.ofMinutes(1), 4, 6));
+    }
+}
@@ -0,0 +1,137 @@
+package com.krachbank.api.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+
+import com.krachbank.api.models.User;
+import com.krachbank.api.service.JwtService;
+import com.krachbank.api.service.TokenRevocationService;
+import com.krachbank.api.service.TokenRevocationWheel;
+import com.krachbank.api.service.TokenVersionService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class JwtAuthenticationFilterTest {
+
+    private static final String SECRET = "404E635266556A586E3272357538782F413F4428472B4B6250645367566B5970";
+
+    private JwtService jwtService;
+    private UserDetailsService userDetailsService;
+    private TokenVersionService tokenVersionService;
+    private TokenRevocationService tokenRevocationService;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        jwtService = new JwtService(SECRET, 60_000, 0, new SimpleMeterRegistry());
+        userDetailsService = mock(UserDetailsService.class);
+        tokenVersionService = mock(TokenVersionService.class);
+        tokenRevocationService = new TokenRevocationWheel(60_000, Duration.ofSeconds(1), new SimpleMeterRegistry());
+        user = new User();
+        user.setId(7L);
+        user.setUsername("alice");
+        user.setActive(true);
+        SecurityContextHolder.clearContext();
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private Authentication filter(boolean claimsOnly, String token) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/accounts");
+        request.addHeader("Authorization", "Bearer " + token);
+        new JwtAuthenticationFilter(jwtService, userDetailsService, tokenVersionService,
+                tokenRevocationService, claimsOnly)
+                .doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+
+    @Test
+    void testClaimsOnlyAuthenticatesWithoutLoadingTheUser() throws Exception {
+        String token = jwtService.generateToken(user);
+
+        Authentication authentication = filter(true, token);
+
+        assertNotNull(authentication);
+        User principal = (User) authentication.getPrincipal();
+        assertEquals(7L, principal.getId());
+        assertEquals("alice", principal.getUsername());
+        assertEquals("ROLE_USER", authentication.getAuthorities().iterator().next().getAuthority());
+        verify(userDetailsService, never()).loadUserByUsername("alice");
+    }
+
+    @Test
+    void testClaimsOnlyRejectsRevokedToken() throws Exception {
+        String token = jwtService.generateToken(user);
+        when(tokenVersionService.currentVersion(7L)).thenReturn(1);
+
+        assertNull(filter(true, token));
+    }
+
+    @Test
+    void testClaimsOnlyRejectsInactiveUser() throws Exception {
+        user.setActive(false);
+
+        assertNull(filter(true, jwtService.generateToken(user)));
+    }
+
+    @Test
+    void testRevokedTokenIsNotAuthenticated() throws Exception {
+        String token = jwtService.generateToken(user);
+        when(userDetailsService.loadUserByUsername("alice")).thenReturn(user);
+        tokenRevocationService.revoke(jwtService.verify(token));
+
+        assertNull(filter(true, token));
+        assertNull(filter(false, token));
+        assertNotNull(filter(false, jwtService.generateToken(user)));
+    }
+
+    @Test
+    void testDefaultModeRejectsDeactivatedUser() throws Exception {
+        // the token was handed out while the user was still active
+        String token = jwtService.generateToken(user);
+        user.setActive(false);
+        when(userDetailsService.loadUserByUsername("alice")).thenReturn(user);
+
+        assertNull(filter(false, token));
+    }
+
+    @Test
+    void testDefaultModeRejectsLockedUser() throws Exception {
+        String token = jwtService.generateToken(user);
+        UserDetails locked = org.springframework.security.core.userdetails.User.withUsername("alice")
+                .password("secret").accountLocked(true).build();
+        when(userDetailsService.loadUserByUsername("alice")).thenReturn(locked);
+
+        assertNull(filter(false, token));
+    }
+
+    @Test
+    void testDefaultModeStillLoadsTheUser() throws Exception {
+        String token = jwtService.generateToken(user);
+        when(userDetailsService.loadUserByUsername("alice")).thenReturn(user);
+
+        assertNotNull(filter(false, token));
+        verify(userDetailsService).loadUserByUsername("alice");
+    }
+}
@@ -0,0 +1,174 @@
+package com.krachbank.api.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mockStatic;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import org.hibernate.SessionFactory;
+import org.iban4j.Iban;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.krachbank.api.configuration.IBANGenerator;
+import com.krachbank.api.models.Account;
+import com.krachbank.api.models.AccountType;
+import com.krachbank.api.models.Transaction;
+import com.krachbank.api.models.User;
+import com.krachbank.api.repository.AccountRepository;
+import com.krachbank.api.repository.DailySpendRepository;
+import com.krachbank.api.repository.IdempotencyKeyRepository;
+import com.krachbank.api.repository.LedgerEntryRepository;
+import com.krachbank.api.repository.TransactionRepository;
+import com.krachbank.api.repository.UserRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+
+@DataJpaTest
+@Import({ AccountBatchJpa.class, TransactionJpa.class, AccountServiceJpa.class, IdempotencyServiceJpa.class,
+        TransferRunner.class, LedgerServiceJpa.class, SimpleMeterRegistry.class })
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@TestPropertySource(properties = {
+        "application.accounts.bulk.flush-size=100",
+        "spring.jpa.properties.hibernate.generate_statistics=true" })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class AccountBatchJpaTest {
+
+    @Autowired
+    private AccountBatchService accountBatchService;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private LedgerEntryRepository ledgerEntryRepository;
+
+    @Autowired
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private DailySpendRepository dailySpendRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        idempotencyKeyRepository.deleteAll();
+        ledgerEntryRepository.deleteAll();
+        transactionRepository.deleteAll();
+        dailySpendRepository.deleteAll();
+        accountRepository.deleteAll();
+        userRepository.deleteAll();
+
+        user = new User();
+        user.setUsername("bulk");
+        user.setPassword("secret");
+        user.setEmail("bulk@example.com");
+        user.setCreatedAt(LocalDateTime.now());
+        user.setDailyLimit(new BigDecimal("10000"));
+        userRepository.save(user);
+    }
+
+    private List<Account> accounts(int count, Long ownerId) {
+        List<Account> accounts = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            User owner = new User();
+            owner.setId(ownerId);
+            Account account = new Account();
+            account.setUser(owner);
+            account.setAccountType(AccountType.CHECKING);
+            account.setBalance(BigDecimal.TEN);
+            accounts.add(account);
+        }
+        return accounts;
+    }
+
+    @Test
+    void testAllAccountsAreCreatedInBatches() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        List<String> ibans = accountBatchService.createAccounts(accounts(1000, user.getId()));
+
+        assertEquals(1000, ibans.size());
+        assertEquals(1000, new HashSet<>(ibans).size());
+        assertEquals(1000, accountRepository.count());
+        // a jdbc batch per 50 inserts and a sequence call per 50 ids, not a statement per account
+        assertTrue(statistics.getPrepareStatementCount() < 100,
+                "statements: " + statistics.getPrepareStatementCount());
+        assertEquals(user.getId(), accountRepository.findAll().get(0).getUser().getId());
+    }
+
+    @Test
+    void testBulkAccountCanSendMoney() throws Exception {
+        List<String> ibans = accountBatchService.createAccounts(accounts(2, user.getId()));
+        Account sendingAccount = accountRepository.findByIban(Iban.valueOf(ibans.get(0))).get();
+        Account receivingAccount = accountRepository.findByIban(Iban.valueOf(ibans.get(1))).get();
+        assertEquals(0, new BigDecimal("1000").compareTo(sendingAccount.getTransactionLimit()));
+
+        Transaction transaction = new Transaction();
+        transaction.setFromAccount(sendingAccount);
+        transaction.setToAccount(receivingAccount);
+        transaction.setAmount(new BigDecimal("5.00"));
+        transactionService.createTransaction(transaction);
+
+        assertEquals(0, new BigDecimal("5.00")
+                .compareTo(accountRepository.findById(sendingAccount.getId()).get().getBalance()));
+    }
+
+    @Test
+    void testIbanInTheDatabaseIsGeneratedAgain() {
+        String existing = accountBatchService.createAccounts(accounts(1, user.getId())).get(0);
+        Iban fresh = IBANGenerator.generateIBAN();
+
+        List<String> ibans;
+        try (MockedStatic<IBANGenerator> generator = mockStatic(IBANGenerator.class)) {
+            generator.when(IBANGenerator::generateIBAN).thenReturn(Iban.valueOf(existing), fresh);
+            ibans = accountBatchService.createAccounts(accounts(1, user.getId()));
+        }
+
+        assertEquals(List.of(fresh.toString()), ibans);
+        assertEquals(2, accountRepository.count());
+    }
+
+    @Test
+    void testUnknownOwnerCreatesNothing() {
+        List<Account> accounts = accounts(10, user.getId());
+        accounts.addAll(accounts(1, -1L));
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> accountBatchService.createAccounts(accounts));
+
+        assertEquals("User not found with ID: -1", e.getMessage());
+        assertEquals(0, accountRepository.count());
+    }
+}
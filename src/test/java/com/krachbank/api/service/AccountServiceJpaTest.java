@@ -2,18 +2,22 @@ package com.krachbank.api.service;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
 
 import org.iban4j.Iban;
 import org.junit.jupiter.api.BeforeEach;
@@ -25,6 +29,8 @@ import com.krachbank.api.models.AccountType;
 import com.krachbank.api.models.User;
 import com.krachbank.api.repository.AccountRepository;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
 public class AccountServiceJpaTest {
     private AccountServiceJpa accountService;
     private AccountRepository accountRepository;
@@ -43,7 +49,8 @@ public class AccountServiceJpaTest {
         accountRepository = mock(AccountRepository.class);
         ibanGenerator = mock(IBANGenerator.class);
         transactionService = mock(TransactionService.class);
-        accountService = new AccountServiceJpa(accountRepository);
+        accountService = new AccountServiceJpa(accountRepository, Duration.ofMinutes(5), 100,
+                new SimpleMeterRegistry());
 
         user1 = new User();
         user1.setId(1L);
@@ -156,4 +163,68 @@ public class AccountServiceJpaTest {
     void testCreateAccounts_NullList() {
         assertThrows(NullPointerException.class, () -> accountService.createAccounts(null));
     }
+
+    @Test
+    void testGetAccountReferenceByIBAN_QueriesOnceAndLeavesOutBalance() {
+        when(accountRepository.findMetadataByIban(iban1)).thenReturn(List.<Object[]>of(
+                new Object[] { 1L, 1L, AccountType.SAVINGS, BigDecimal.valueOf(100.0), BigDecimal.TEN }));
+
+        Account first = accountService.getAccountReferenceByIBAN(iban1.toString());
+        // the way it is printed on a card
+        Account second = accountService.getAccountReferenceByIBAN(iban1.toFormattedString().toLowerCase());
+
+        assertEquals(1L, first.getId());
+        assertEquals(iban1, first.getIban());
+        assertEquals(1L, first.getUser().getId());
+        assertEquals(AccountType.SAVINGS, first.getAccountType());
+        assertEquals(BigDecimal.TEN, first.getTransactionLimit());
+        assertNull(first.getBalance());
+        assertEquals(first, second);
+        verify(accountRepository, times(1)).findMetadataByIban(iban1);
+    }
+
+    @Test
+    void testGetAccountReferenceByIBAN_UnknownIbanIsNotCached() {
+        when(accountRepository.findMetadataByIban(iban1)).thenReturn(List.of());
+
+        assertThrows(IllegalArgumentException.class, () -> accountService.getAccountReferenceByIBAN(iban1.toString()));
+        assertThrows(IllegalArgumentException.class, () -> accountService.getAccountReferenceByIBAN(iban1.toString()));
+        verify(accountRepository, times(2)).findMetadataByIban(iban1);
+    }
+
+    @Test
+    void testRemoveAccount_EvictsCachedMetadata() {
+        when(accountRepository.findMetadataByIban(iban1)).thenReturn(List.<Object[]>of(
+                new Object[] { 1L, 1L, AccountType.SAVINGS, BigDecimal.valueOf(100.0), BigDecimal.TEN }));
+        when(accountRepository.existsById(1L)).thenReturn(true);
+
+        accountService.getAccountReferenceByIBAN(iban1.toString());
+        accountService.removeAccount(account1);
+        accountService.getAccountReferenceByIBAN(iban1.toString());
+
+        verify(accountRepository, times(2)).findMetadataByIban(iban1);
+    }
+
+    @Test
+    void testUpdateAccount_EvictsCachedMetadata() throws Exception {
+        when(accountRepository.findMetadataByIban(iban1)).thenReturn(List.<Object[]>of(
+                new Object[] { 1L, 1L, AccountType.SAVINGS, BigDecimal.valueOf(100.0), BigDecimal.TEN }));
+        when(accountRepository.existsById(1L)).thenReturn(true);
+        when(accountRepository.findById(1L)).thenReturn(Optional.of(account1));
+
+        accountService.getAccountReferenceByIBAN(iban1.toString());
+        assertTrue(accountService.updateAccount(1L, account1).isPresent());
+        accountService.getAccountReferenceByIBAN(iban1.toString());
+
+        verify(accountRepository).save(account1);
+        verify(accountRepository, times(2)).findMetadataByIban(iban1);
+    }
+
+    @Test
+    void testUpdateAccount_UnknownAccountThrows() {
+        when(accountRepository.existsById(1L)).thenReturn(false);
+
+        assertThrows(Exception.class, () -> accountService.updateAccount(1L, account1));
+        verify(accountRepository, never()).save(any(Account.class));
+    }
 }
@@ -0,0 +1,177 @@
+package com.krachbank.api.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.krachbank.api.configuration.IBANGenerator;
+import com.krachbank.api.models.Account;
+import com.krachbank.api.models.AccountType;
+import com.krachbank.api.models.Transaction;
+import com.krachbank.api.models.User;
+import com.krachbank.api.repository.AccountRepository;
+import com.krachbank.api.repository.DailySpendRepository;
+import com.krachbank.api.repository.TransactionRepository;
+import com.krachbank.api.repository.UserRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+
+// a transfer with application.transactions.locking=conditional never loads or locks an account
+@DataJpaTest
+@Import({ TransactionJpa.class, AccountServiceJpa.class, IdempotencyServiceJpa.class,
+        TransferRunner.class, LedgerServiceJpa.class, SimpleMeterRegistry.class })
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@TestPropertySource(properties = {
+        "application.transactions.locking=conditional",
+        "spring.jpa.properties.hibernate.generate_statistics=true" })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class ConditionalTransferTest {
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private DailySpendRepository dailySpendRepository;
+
+    private Statistics statistics;
+    private Account sendingAccount;
+    private Account receivingAccount;
+
+    @BeforeEach
+    void setUp() {
+        transactionRepository.deleteAll();
+        dailySpendRepository.deleteAll();
+        accountRepository.deleteAll();
+        userRepository.deleteAll();
+
+        User user = new User();
+        user.setUsername("conditional");
+        user.setPassword("secret");
+        user.setEmail("conditional@example.com");
+        user.setCreatedAt(LocalDateTime.now());
+        user.setDailyLimit(new BigDecimal("10000"));
+        userRepository.save(user);
+
+        sendingAccount = createAccount(user, new BigDecimal("100.00"));
+        receivingAccount = createAccount(user, BigDecimal.ZERO);
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    private Account createAccount(User user, BigDecimal balance) {
+        Account account = new Account();
+        account.setIban(IBANGenerator.generateIBAN());
+        account.setUser(user);
+        account.setAccountType(AccountType.CHECKING);
+        account.setBalance(balance);
+        account.setAbsoluteLimit(new BigDecimal("-50.00"));
+        account.setTransactionLimit(new BigDecimal("1000"));
+        account.setCreatedAt(LocalDateTime.now());
+        return accountRepository.save(account);
+    }
+
+    private Transaction transfer(String amount) {
+        Transaction transaction = new Transaction();
+        transaction.setFromAccount(sendingAccount);
+        transaction.setToAccount(receivingAccount);
+        transaction.setAmount(new BigDecimal(amount));
+        return transaction;
+    }
+
+    private BigDecimal balance(Account account) {
+        return accountRepository.findById(account.getId()).orElseThrow().getBalance();
+    }
+
+    @Test
+    void testTransferUpdatesBalancesWithoutLoadingAccounts() throws Exception {
+        statistics.clear();
+
+        transactionService.createTransaction(transfer("150.00"));
+
+        assertEquals(0, statistics.getEntityStatistics(Account.class.getName()).getLoadCount());
+        // daily limit, daily spend, debit, credit, the transaction and ledger inserts, the daily spend counter
+        // and a sequence call now and then
+        assertTrue(statistics.getPrepareStatementCount() <= 10, statistics.getPrepareStatementCount() + " statements");
+        assertEquals(0, new BigDecimal("-50.00").compareTo(balance(sendingAccount)));
+        assertEquals(0, new BigDecimal("150.00").compareTo(balance(receivingAccount)));
+        assertEquals(1, transactionRepository.count());
+    }
+
+    @Test
+    void testDebitBelowAbsoluteLimitChangesNothing() {
+        Exception e = assertThrows(Exception.class, () -> transactionService.createTransaction(transfer("150.01")));
+
+        assertEquals("cant spend more then the absolute limit", e.getMessage());
+        assertEquals(0, new BigDecimal("100.00").compareTo(balance(sendingAccount)));
+        assertEquals(0, BigDecimal.ZERO.compareTo(balance(receivingAccount)));
+        assertEquals(0, transactionRepository.count());
+    }
+
+    @Test
+    void testDebitChecksTheTransferLimitInTheRow() {
+        // the given account still has the old limit, like cached metadata would
+        Account changed = accountRepository.findById(sendingAccount.getId()).orElseThrow();
+        changed.setTransactionLimit(new BigDecimal("10"));
+        accountRepository.save(changed);
+
+        Exception e = assertThrows(Exception.class, () -> transactionService.createTransaction(transfer("50.00")));
+
+        assertEquals("this amount is more than your transfer limit of the account", e.getMessage());
+        assertEquals(0, new BigDecimal("100.00").compareTo(balance(sendingAccount)));
+        assertEquals(0, BigDecimal.ZERO.compareTo(balance(receivingAccount)));
+        assertEquals(0, transactionRepository.count());
+    }
+
+    @Test
+    void testDebitFailingAfterCreditRollsTheCreditBack() {
+        // the credit goes first when the receiving account has the lower id
+        Account lower = receivingAccount;
+        receivingAccount = sendingAccount;
+        sendingAccount = lower;
+
+        Exception e = assertThrows(Exception.class, () -> transactionService.createTransaction(transfer("50.01")));
+
+        assertEquals("cant spend more then the absolute limit", e.getMessage());
+        assertEquals(0, new BigDecimal("100.00").compareTo(balance(receivingAccount)));
+        assertEquals(0, BigDecimal.ZERO.compareTo(balance(sendingAccount)));
+    }
+
+    @Test
+    void testUpdatesBumpTheVersion() throws Exception {
+        transactionService.createTransaction(transfer("1.00"));
+
+        assertEquals(sendingAccount.getVersion() + 1,
+                accountRepository.findById(sendingAccount.getId()).orElseThrow().getVersion());
+        assertEquals(receivingAccount.getVersion() + 1,
+                accountRepository.findById(receivingAccount.getId()).orElseThrow().getVersion());
+    }
+}
@@ -0,0 +1,224 @@
+package com.krachbank.api.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.krachbank.api.configuration.IBANGenerator;
+import com.krachbank.api.models.Account;
+import com.krachbank.api.models.AccountType;
+import com.krachbank.api.models.DailySpend;
+import com.krachbank.api.models.Transaction;
+import com.krachbank.api.models.User;
+import com.krachbank.api.repository.AccountRepository;
+import com.krachbank.api.repository.DailySpendRepository;
+import com.krachbank.api.repository.TransactionRepository;
+import com.krachbank.api.repository.UserRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// the owner spends from a few of his accounts on multiple threads. the account locks do not keep those
+// transfers apart, so the daily limit has to hold in the counter update itself, and for batches in the
+// locked counter. this runs the default conditional updates, the subclasses the other locking modes
+@DataJpaTest
+@Import({ TransactionJpa.class, TransactionBatchJpa.class, AccountServiceJpa.class, IdempotencyServiceJpa.class,
+        TransferRunner.class, LedgerServiceJpa.class, SimpleMeterRegistry.class })
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@TestPropertySource(properties = "application.transactions.locking=conditional")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class DailyLimitConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final int SENDING_ACCOUNTS = 4;
+    private static final int TRANSFERS_PER_THREAD = 20;
+    private static final BigDecimal AMOUNT = new BigDecimal("10.00");
+    private static final BigDecimal DAILY_LIMIT = new BigDecimal("1000.00");
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private TransactionBatchService transactionBatchService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private DailySpendRepository dailySpendRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private User user;
+    private List<Account> sendingAccounts;
+    private Account receivingAccount;
+
+    @BeforeEach
+    void setUp() {
+        transactionRepository.deleteAll();
+        dailySpendRepository.deleteAll();
+        accountRepository.deleteAll();
+        userRepository.deleteAll();
+
+        user = new User();
+        user.setUsername("spender");
+        user.setPassword("secret");
+        user.setEmail("spender@example.com");
+        user.setCreatedAt(LocalDateTime.now());
+        user.setDailyLimit(DAILY_LIMIT);
+        userRepository.save(user);
+
+        sendingAccounts = new ArrayList<>();
+        for (int i = 0; i < SENDING_ACCOUNTS; i++) {
+            sendingAccounts.add(createAccount(new BigDecimal("100000.00")));
+        }
+        receivingAccount = createAccount(BigDecimal.ZERO);
+    }
+
+    private Account createAccount(BigDecimal balance) {
+        Account account = new Account();
+        account.setIban(IBANGenerator.generateIBAN());
+        account.setUser(user);
+        account.setAccountType(AccountType.CHECKING);
+        account.setBalance(balance);
+        account.setAbsoluteLimit(BigDecimal.ZERO);
+        account.setTransactionLimit(new BigDecimal("1000"));
+        account.setCreatedAt(LocalDateTime.now());
+        return accountRepository.save(account);
+    }
+
+    private Transaction transfer(Account sendingAccount) {
+        Transaction transaction = new Transaction();
+        transaction.setFromAccount(sendingAccount);
+        transaction.setToAccount(receivingAccount);
+        transaction.setInitiator(user);
+        transaction.setAmount(AMOUNT);
+        return transaction;
+    }
+
+    @Test
+    void testConcurrentTransfersStayBelowTheDailyLimit() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        AtomicInteger succeeded = new AtomicInteger();
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            Account sendingAccount = sendingAccounts.get(t % SENDING_ACCOUNTS);
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                    Transaction transaction = transfer(sendingAccount);
+                    try {
+                        transactionService.createTransaction(transaction);
+                        succeeded.incrementAndGet();
+                    } catch (Exception e) {
+                        // the limit is expected, anything else is a real failure
+                        if (!"daily limit reached".equals(e.getMessage())) {
+                            throw new IllegalStateException(e);
+                        }
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertSpendStoppedAtTheLimit(succeeded.get());
+    }
+
+    // the first transfer of 600 added to the counter but did not commit yet, the second one of 600 has to wait
+    // for it instead of checking against the total from before. they are from different accounts of the owner,
+    // so the account locks do not keep them apart. returns the error of the second transfer
+    private String secondTransferWhileTheFirstIsRunning(Function<Transaction, String> second) throws Exception {
+        dailySpendRepository.save(new DailySpend(null, user.getId(), LocalDate.now(), BigDecimal.ZERO));
+        CountDownLatch transferred = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        Future<?> first = executor.submit(() -> new TransactionTemplate(transactionManager).executeWithoutResult(
+                status -> {
+                    try {
+                        Transaction transaction = transfer(sendingAccounts.get(0));
+                        transaction.setAmount(new BigDecimal("600.00"));
+                        transactionService.createTransaction(transaction);
+                        transferred.countDown();
+                        commit.await();
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }));
+        transferred.await();
+        Transaction transaction = transfer(sendingAccounts.get(1));
+        transaction.setToAccount(createAccount(BigDecimal.ZERO));
+        transaction.setAmount(new BigDecimal("600.00"));
+        Future<String> error = executor.submit(() -> second.apply(transaction));
+        Thread.sleep(200);
+        commit.countDown();
+        first.get();
+        String result = error.get();
+        executor.shutdown();
+
+        assertEquals(0, new BigDecimal("600.00").compareTo(dailySpendRepository
+                .findByUserIdAndSpendDate(user.getId(), LocalDate.now()).orElseThrow().getTotal()));
+        return result;
+    }
+
+    @Test
+    void testTransferWaitsForATransferThatIsStillRunning() throws Exception {
+        assertEquals("daily limit reached", secondTransferWhileTheFirstIsRunning(transaction -> {
+            try {
+                transactionService.createTransaction(transaction);
+                return null;
+            } catch (Exception e) {
+                return e.getMessage();
+            }
+        }));
+    }
+
+    @Test
+    void testBatchWaitsForATransferThatIsStillRunning() throws Exception {
+        assertEquals("daily limit reached", secondTransferWhileTheFirstIsRunning(
+                transaction -> transactionBatchService.createTransactions(List.of(transaction)).get(0).getError()));
+    }
+
+    private void assertSpendStoppedAtTheLimit(int succeeded) {
+        // the total has to stay below the limit, so 99 transfers of 10 and not one more
+        BigDecimal spend = AMOUNT.multiply(BigDecimal.valueOf(succeeded));
+        assertEquals(99, succeeded);
+        assertEquals(succeeded, transactionRepository.count());
+        assertEquals(0, spend.compareTo(dailySpendRepository
+                .findByUserIdAndSpendDate(user.getId(), LocalDate.now()).orElseThrow().getTotal()));
+        assertEquals(0, spend.compareTo(accountRepository.findById(receivingAccount.getId()).orElseThrow()
+                .getBalance()));
+    }
+}
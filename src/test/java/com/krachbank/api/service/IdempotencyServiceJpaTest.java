@@ -0,0 +1,204 @@
+package com.krachbank.api.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.krachbank.api.configuration.IBANGenerator;
+import com.krachbank.api.dto.TransactionDTOResponse;
+import com.krachbank.api.models.Account;
+import com.krachbank.api.models.AccountType;
+import com.krachbank.api.models.IdempotencyKey;
+import com.krachbank.api.models.Transaction;
+import com.krachbank.api.models.User;
+import com.krachbank.api.repository.AccountRepository;
+import com.krachbank.api.repository.DailySpendRepository;
+import com.krachbank.api.repository.IdempotencyKeyRepository;
+import com.krachbank.api.repository.TransactionRepository;
+import com.krachbank.api.repository.UserRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@DataJpaTest
+@Import({ TransactionJpa.class, AccountServiceJpa.class, IdempotencyServiceJpa.class,
+        TransferRunner.class, LedgerServiceJpa.class, SimpleMeterRegistry.class })
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class IdempotencyServiceJpaTest {
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private DailySpendRepository dailySpendRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private User user;
+    private Account fromAccount;
+    private Account toAccount;
+
+    @BeforeEach
+    void setUp() {
+        idempotencyKeyRepository.deleteAll();
+        transactionRepository.deleteAll();
+        dailySpendRepository.deleteAll();
+        accountRepository.deleteAll();
+        userRepository.deleteAll();
+
+        user = new User();
+        user.setUsername("retry");
+        user.setPassword("secret");
+        user.setEmail("retry@example.com");
+        user.setCreatedAt(LocalDateTime.now());
+        user.setDailyLimit(new BigDecimal("10000"));
+        userRepository.save(user);
+
+        fromAccount = createAccount();
+        toAccount = createAccount();
+    }
+
+    private Account createAccount() {
+        Account account = new Account();
+        account.setIban(IBANGenerator.generateIBAN());
+        account.setUser(user);
+        account.setAccountType(AccountType.CHECKING);
+        account.setBalance(new BigDecimal("1000.00"));
+        account.setAbsoluteLimit(BigDecimal.ZERO);
+        account.setTransactionLimit(new BigDecimal("1000"));
+        account.setCreatedAt(LocalDateTime.now());
+        return accountRepository.save(account);
+    }
+
+    private Transaction transfer() {
+        Transaction transaction = new Transaction();
+        transaction.setFromAccount(fromAccount);
+        transaction.setToAccount(toAccount);
+        transaction.setInitiator(user);
+        transaction.setAmount(new BigDecimal("100.00"));
+        transaction.setCreatedAt(LocalDateTime.now());
+        return transaction;
+    }
+
+    private IdempotencyKey stored(String key, LocalDateTime createdAt, LocalDateTime expiresAt) {
+        return new IdempotencyKey(null, user.getId(), key, "hash", 200, "{}", createdAt, expiresAt);
+    }
+
+    @Test
+    void testSavedResponseIsReturnedForTheSameKey() {
+        idempotencyService.saveResponse(user.getId(), "key-1", "hash", 200, "body");
+
+        Optional<IdempotencyKey> stored = idempotencyService.getResponse(user.getId(), "key-1");
+
+        assertTrue(stored.isPresent());
+        assertEquals(200, stored.get().getStatus());
+        assertEquals("\"body\"", stored.get().getResponseBody());
+        assertEquals("hash", stored.get().getRequestHash());
+        assertTrue(idempotencyService.getResponse(user.getId(), "key-2").isEmpty());
+    }
+
+    @Test
+    void testSameKeyOfAnotherUserIsAnotherKey() {
+        idempotencyService.saveResponse(user.getId(), "key-1", "hash", 200, "mine");
+
+        assertTrue(idempotencyService.getResponse(user.getId() + 1, "key-1").isEmpty());
+        idempotencyService.saveResponse(user.getId() + 1, "key-1", "hash", 200, "theirs");
+
+        assertEquals("\"mine\"", idempotencyService.getResponse(user.getId(), "key-1").get().getResponseBody());
+        assertEquals("\"theirs\"",
+                idempotencyService.getResponse(user.getId() + 1, "key-1").get().getResponseBody());
+    }
+
+    @Test
+    void testRequestHashOnlyMatchesTheSameRequest() {
+        TransactionDTOResponse request = new TransactionDTOResponse(new BigDecimal("100.00"), "NL01", "NL02",
+                "rent", user.getId(), null);
+        TransactionDTOResponse same = new TransactionDTOResponse(new BigDecimal("100.00"), "NL01", "NL02",
+                "rent", user.getId(), null);
+        TransactionDTOResponse other = new TransactionDTOResponse(new BigDecimal("1000.00"), "NL01", "NL02",
+                "rent", user.getId(), null);
+
+        assertEquals(64, idempotencyService.requestHash(request).length());
+        assertEquals(idempotencyService.requestHash(request), idempotencyService.requestHash(same));
+        assertNotEquals(idempotencyService.requestHash(request), idempotencyService.requestHash(other));
+    }
+
+    @Test
+    void testKeyWithoutUserIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> idempotencyService.getResponse(null, "key-1"));
+        assertThrows(IllegalArgumentException.class,
+                () -> idempotencyService.saveResponse(null, "key-1", "hash", 200, "body"));
+    }
+
+    @Test
+    void testExpiredKeyIsIgnoredAndRemoved() {
+        LocalDateTime yesterday = LocalDateTime.now().minusDays(1);
+        idempotencyKeyRepository.save(stored("old", yesterday, yesterday));
+
+        assertTrue(idempotencyService.getResponse(user.getId(), "old").isEmpty());
+        assertTrue(idempotencyKeyRepository.findByUserIdAndKey(user.getId(), "old").isEmpty());
+    }
+
+    @Test
+    void testKeyLoadedFromTheDatabaseIsNotCachedPastItsExpiry() throws Exception {
+        LocalDateTime now = LocalDateTime.now();
+        idempotencyKeyRepository.save(stored("almost", now.minusDays(1), now.plusSeconds(1)));
+
+        assertTrue(idempotencyService.getResponse(user.getId(), "almost").isPresent());
+        Thread.sleep(1500);
+
+        assertTrue(idempotencyService.getResponse(user.getId(), "almost").isEmpty());
+    }
+
+    @Test
+    void testRemoveExpiredOnlyRemovesExpiredKeys() {
+        LocalDateTime yesterday = LocalDateTime.now().minusDays(1);
+        idempotencyKeyRepository.save(stored("old", yesterday, yesterday));
+        idempotencyService.saveResponse(user.getId(), "new", "hash", 200, "{}");
+
+        assertEquals(1, idempotencyService.removeExpired());
+        assertTrue(idempotencyKeyRepository.findByUserIdAndKey(user.getId(), "new").isPresent());
+    }
+
+    @Test
+    void testRetriedTransferWithSameKeyIsNotExecutedTwice() throws Exception {
+        transactionService.createTransaction(transfer(), user.getId(), "transfer-1", "hash");
+
+        assertThrows(DataIntegrityViolationException.class,
+                () -> transactionService.createTransaction(transfer(), user.getId(), "transfer-1", "hash"));
+
+        assertEquals(1, transactionRepository.count());
+        assertEquals(0, new BigDecimal("900.00")
+                .compareTo(accountRepository.findById(fromAccount.getId()).get().getBalance()));
+        assertTrue(idempotencyService.getResponse(user.getId(), "transfer-1").isPresent());
+    }
+}
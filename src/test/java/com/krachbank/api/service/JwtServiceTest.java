@@ -0,0 +1,113 @@
+package com.krachbank.api.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.krachbank.api.models.User;
+import com.krachbank.api.security.VerifiedToken;
+
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class JwtServiceTest {
+
+    private static final String SECRET = "404E635266556A586E3272357538782F413F4428472B4B6250645367566B5970";
+
+    private SimpleMeterRegistry meterRegistry;
+    private JwtService jwtService;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        jwtService = new JwtService(SECRET, 60_000, 100, meterRegistry);
+        user = new User();
+        user.setUsername("alice");
+    }
+
+    @Test
+    void testVerifyReturnsTheClaimsOfAGeneratedToken() {
+        VerifiedToken token = jwtService.verify(jwtService.generateToken(user));
+
+        assertEquals("alice", token.username());
+        assertTrue(token.expiration().after(token.issuedAt()));
+        assertTrue(jwtService.isTokenValid(token, user));
+    }
+
+    @Test
+    void testTokenIsNotValidForAnotherUser() {
+        User other = new User();
+        other.setUsername("bob");
+
+        assertFalse(jwtService.isTokenValid(jwtService.generateToken(user), other));
+    }
+
+    @Test
+    void testVerifyRejectsTamperedToken() {
+        String token = jwtService.generateToken(user);
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("A") ? "BB" : "AA");
+
+        assertThrows(JwtException.class, () -> jwtService.verify(tampered));
+    }
+
+    @Test
+    void testVerifyRejectsTokenOfAnotherSecret() {
+        JwtService otherService = new JwtService("6B5970" + SECRET.substring(6), 60_000, 100,
+                new SimpleMeterRegistry());
+
+        assertThrows(JwtException.class, () -> jwtService.verify(otherService.generateToken(user)));
+    }
+
+    @Test
+    void testVerifyRejectsExpiredToken() {
+        JwtService expiredService = new JwtService(SECRET, -1000, 100, new SimpleMeterRegistry());
+
+        assertThrows(ExpiredJwtException.class, () -> jwtService.verify(expiredService.generateToken(user)));
+    }
+
+    private double cacheGets(String result) {
+        return meterRegistry.get("cache.gets").tag("cache", "jwt.verified-tokens").tag("result", result)
+                .functionCounter().count();
+    }
+
+    @Test
+    void testSameTokenIsOnlyVerifiedOnce() {
+        String token = jwtService.generateToken(user);
+
+        VerifiedToken first = jwtService.verify(token);
+        VerifiedToken second = jwtService.verify(token);
+
+        assertSame(first, second);
+        assertEquals(1, cacheGets("miss"));
+        assertEquals(1, cacheGets("hit"));
+    }
+
+    @Test
+    void testInvalidTokenIsNotCached() {
+        String token = jwtService.generateToken(user);
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("A") ? "BB" : "AA");
+
+        assertThrows(JwtException.class, () -> jwtService.verify(tampered));
+        assertThrows(JwtException.class, () -> jwtService.verify(tampered));
+        assertEquals(0, cacheGets("hit"));
+    }
+
+    @Test
+    void testCachedTokenIsNotReturnedAfterItExpired() throws Exception {
+        JwtService shortLived = new JwtService(SECRET, 1000, 100, new SimpleMeterRegistry());
+        String token = shortLived.generateToken(user);
+        shortLived.verify(token);
+
+        // jwt dates are in whole seconds, so wait until exp has surely passed
+        Thread.sleep(2100);
+
+        assertThrows(ExpiredJwtException.class, () -> shortLived.verify(token));
+    }
+}
@@ -0,0 +1,204 @@
+package com.krachbank.api.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Window;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.krachbank.api.configuration.IBANGenerator;
+import com.krachbank.api.filters.AccountFilter;
+import com.krachbank.api.filters.BaseFilter;
+import com.krachbank.api.filters.TransactionFilter;
+import com.krachbank.api.models.Account;
+import com.krachbank.api.models.AccountType;
+import com.krachbank.api.models.Transaction;
+import com.krachbank.api.models.User;
+import com.krachbank.api.repository.AccountRepository;
+import com.krachbank.api.repository.DailySpendRepository;
+import com.krachbank.api.repository.TransactionRepository;
+import com.krachbank.api.repository.UserRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@DataJpaTest
+@Import({ TransactionJpa.class, AccountServiceJpa.class, IdempotencyServiceJpa.class,
+        TransferRunner.class, LedgerServiceJpa.class, SimpleMeterRegistry.class })
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class KeysetPaginationTest {
+
+    private static final int TRANSACTIONS = 23;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private DailySpendRepository dailySpendRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private List<Account> accounts;
+    private List<Transaction> transactions;
+
+    @BeforeEach
+    void setUp() {
+        transactionRepository.deleteAll();
+        dailySpendRepository.deleteAll();
+        accountRepository.deleteAll();
+        userRepository.deleteAll();
+
+        User user = new User();
+        user.setUsername("pages");
+        user.setPassword("secret");
+        user.setEmail("pages@example.com");
+        user.setCreatedAt(LocalDateTime.now());
+        userRepository.save(user);
+
+        // a few rows share the same createdAt so the id has to break the tie
+        LocalDateTime start = LocalDateTime.of(2025, 1, 1, 12, 0);
+        accounts = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Account account = new Account();
+            account.setIban(IBANGenerator.generateIBAN());
+            account.setUser(user);
+            account.setAccountType(AccountType.CHECKING);
+            account.setBalance(new BigDecimal("100.00"));
+            account.setAbsoluteLimit(BigDecimal.ZERO);
+            account.setCreatedAt(start.plusMinutes(i / 2));
+            accounts.add(accountRepository.save(account));
+        }
+
+        transactions = new ArrayList<>();
+        for (int i = 0; i < TRANSACTIONS; i++) {
+            Transaction transaction = new Transaction();
+            transaction.setFromAccount(accounts.get(i % 2));
+            transaction.setToAccount(accounts.get(2));
+            transaction.setInitiator(user);
+            transaction.setAmount(BigDecimal.valueOf(i + 1));
+            transaction.setCreatedAt(start.plusMinutes(i / 3));
+            transactions.add(transactionRepository.save(transaction));
+        }
+    }
+
+    private List<Long> newestFirst(List<? extends Object> rows) {
+        List<Long> ids = new ArrayList<>();
+        rows.stream()
+                .map(row -> row instanceof Transaction t ? new Object[] { t.getCreatedAt(), t.getId() }
+                        : new Object[] { ((Account) row).getCreatedAt(), ((Account) row).getId() })
+                .sorted(Comparator.<Object[], LocalDateTime>comparing(key -> (LocalDateTime) key[0])
+                        .thenComparing(key -> (Long) key[1]).reversed())
+                .forEach(key -> ids.add((Long) key[1]));
+        return ids;
+    }
+
+    @Test
+    void testCursorWalksAllTransactionsNewestFirstWithoutGapsOrDuplicates() {
+        TransactionFilter filter = new TransactionFilter();
+        filter.setLimit(5);
+
+        List<Long> seen = new ArrayList<>();
+        int pages = 0;
+        while (true) {
+            Window<Transaction> window = transactionService.getTransactionsByCursor(filter);
+            pages++;
+            window.getContent().forEach(transaction -> seen.add(transaction.getId()));
+            if (!window.hasNext()) {
+                break;
+            }
+            Transaction last = window.getContent().get(window.size() - 1);
+            filter.setCursor(BaseFilter.toCursor(last.getCreatedAt(), last.getId()));
+        }
+
+        assertEquals(5, pages);
+        assertEquals(newestFirst(transactions), seen);
+    }
+
+    @Test
+    void testCursorKeepsTheFilter() {
+        TransactionFilter filter = new TransactionFilter();
+        filter.setSenderId(accounts.get(0).getId());
+        filter.setLimit(4);
+
+        List<Long> seen = new ArrayList<>();
+        Window<Transaction> window;
+        do {
+            window = transactionService.getTransactionsByCursor(filter);
+            for (Transaction transaction : window.getContent()) {
+                assertEquals(accounts.get(0).getId(), transaction.getFromAccount().getId());
+                seen.add(transaction.getId());
+            }
+            if (window.hasNext()) {
+                Transaction last = window.getContent().get(window.size() - 1);
+                filter.setCursor(BaseFilter.toCursor(last.getCreatedAt(), last.getId()));
+            }
+        } while (window.hasNext());
+
+        assertEquals(12, seen.size());
+    }
+
+    @Test
+    void testCursorWalksAllAccounts() {
+        AccountFilter filter = new AccountFilter();
+        filter.setLimit(2);
+
+        List<Long> seen = new ArrayList<>();
+        Window<Account> window;
+        do {
+            window = accountService.getAccountsByCursor(filter);
+            window.getContent().forEach(account -> seen.add(account.getId()));
+            if (window.hasNext()) {
+                Account last = window.getContent().get(window.size() - 1);
+                filter.setCursor(BaseFilter.toCursor(last.getCreatedAt(), last.getId()));
+            }
+        } while (window.hasNext());
+
+        assertEquals(newestFirst(accounts), seen);
+    }
+
+    @Test
+    void testLastPageHasNoNext() {
+        TransactionFilter filter = new TransactionFilter();
+        filter.setLimit(TRANSACTIONS);
+
+        Window<Transaction> window = transactionService.getTransactionsByCursor(filter);
+
+        assertEquals(TRANSACTIONS, window.size());
+        assertFalse(window.hasNext());
+    }
+
+    @Test
+    void testInvalidCursorIsRejected() {
+        TransactionFilter filter = new TransactionFilter();
+        filter.setCursor("not-a-cursor");
+
+        assertThrows(IllegalArgumentException.class, () -> transactionService.getTransactionsByCursor(filter));
+        assertTrue(BaseFilter.toCursor(LocalDateTime.now(), 1L).matches("[A-Za-z0-9_-]+"));
+    }
+}
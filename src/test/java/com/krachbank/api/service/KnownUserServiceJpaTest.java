@@ -0,0 +1,123 @@
+package com.krachbank.api.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.krachbank.api.exceptions.UserAlreadyExistsException;
+import com.krachbank.api.models.User;
+import com.krachbank.api.repository.AccountRepository;
+import com.krachbank.api.repository.DailySpendRepository;
+import com.krachbank.api.repository.IdempotencyKeyRepository;
+import com.krachbank.api.repository.TransactionRepository;
+import com.krachbank.api.repository.UserRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class KnownUserServiceJpaTest {
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private DailySpendRepository dailySpendRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private KnownUserServiceJpa knownUserService;
+
+    @BeforeEach
+    void setUp() {
+        idempotencyKeyRepository.deleteAll();
+        transactionRepository.deleteAll();
+        dailySpendRepository.deleteAll();
+        accountRepository.deleteAll();
+        userRepository.deleteAll();
+
+        userRepository.save(user("alice", "alice@example.com"));
+        meterRegistry = new SimpleMeterRegistry();
+        knownUserService = new KnownUserServiceJpa(userRepository, transactionManager, 1000, 0.01, meterRegistry);
+        knownUserService.load();
+    }
+
+    private static User user(String username, String email) {
+        User user = new User();
+        user.setUsername(username);
+        user.setPassword("secret");
+        user.setEmail(email);
+        user.setCreatedAt(LocalDateTime.now());
+        user.setDailyLimit(new BigDecimal("10000"));
+        return user;
+    }
+
+    private double checks(String result) {
+        return meterRegistry.get("users.registration.checks").tag("result", result).counter().count();
+    }
+
+    @Test
+    void testNewUserIsNotQueried() {
+        knownUserService.checkAvailable("bob", "bob@example.com");
+
+        assertEquals(1, checks("skipped"));
+        assertEquals(0, checks("queried"));
+    }
+
+    @Test
+    void testTakenUsernameAndEmailAreRejected() {
+        UserAlreadyExistsException username = assertThrows(UserAlreadyExistsException.class,
+                () -> knownUserService.checkAvailable("alice", "other@example.com"));
+        UserAlreadyExistsException email = assertThrows(UserAlreadyExistsException.class,
+                () -> knownUserService.checkAvailable("other", "alice@example.com"));
+
+        assertEquals("User with username 'alice' already exists.", username.getMessage());
+        assertEquals("User with email 'alice@example.com' already exists.", email.getMessage());
+        assertEquals(2, checks("queried"));
+    }
+
+    @Test
+    void testRegisteredUserIsChecked() {
+        knownUserService.registered("carol", "carol@example.com");
+
+        // in the filter but not in the database, like a user that was deleted: one query and then allowed
+        knownUserService.checkAvailable("carol", "carol2@example.com");
+
+        assertEquals(1, checks("queried"));
+    }
+
+    @Test
+    void testUniqueConstraintViolationsAreTranslated() {
+        DataIntegrityViolationException duplicateUsername = assertThrows(DataIntegrityViolationException.class,
+                () -> userRepository.saveAndFlush(user("alice", "new@example.com")));
+        DataIntegrityViolationException duplicateEmail = assertThrows(DataIntegrityViolationException.class,
+                () -> userRepository.saveAndFlush(user("new", "alice@example.com")));
+
+        assertEquals("User with username 'alice' already exists.",
+                knownUserService.toUserAlreadyExists(duplicateUsername, "alice", "new@example.com").getMessage());
+        assertEquals("User with email 'alice@example.com' already exists.",
+                knownUserService.toUserAlreadyExists(duplicateEmail, "new", "alice@example.com").getMessage());
+    }
+}
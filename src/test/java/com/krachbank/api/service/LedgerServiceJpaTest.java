@@ -0,0 +1,228 @@
+package com.krachbank.api.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.krachbank.api.configuration.IBANGenerator;
+import com.krachbank.api.models.Account;
+import com.krachbank.api.models.AccountType;
+import com.krachbank.api.models.LedgerEntry;
+import com.krachbank.api.models.Transaction;
+import com.krachbank.api.models.User;
+import com.krachbank.api.repository.AccountRepository;
+import com.krachbank.api.repository.BalanceSnapshotRepository;
+import com.krachbank.api.repository.DailySpendRepository;
+import com.krachbank.api.repository.LedgerEntryRepository;
+import com.krachbank.api.repository.TransactionRepository;
+import com.krachbank.api.repository.UserRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@DataJpaTest
+@Import({ TransactionJpa.class, AccountServiceJpa.class, IdempotencyServiceJpa.class,
+        TransferRunner.class, LedgerServiceJpa.class, SimpleMeterRegistry.class })
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class LedgerServiceJpaTest {
+
+    private static final LocalDateTime DAY_1 = LocalDateTime.of(2025, 6, 1, 12, 0);
+    private static final LocalDateTime DAY_2 = DAY_1.plusDays(1);
+    private static final LocalDateTime DAY_3 = DAY_1.plusDays(2);
+
+    @Autowired
+    private LedgerService ledgerService;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private LedgerEntryRepository ledgerEntryRepository;
+
+    @Autowired
+    private BalanceSnapshotRepository balanceSnapshotRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private DailySpendRepository dailySpendRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private User user;
+    private Account account;
+    private Account other;
+
+    @BeforeEach
+    void setUp() {
+        balanceSnapshotRepository.deleteAll();
+        ledgerEntryRepository.deleteAll();
+        transactionRepository.deleteAll();
+        dailySpendRepository.deleteAll();
+        accountRepository.deleteAll();
+        userRepository.deleteAll();
+
+        user = new User();
+        user.setUsername("history");
+        user.setPassword("secret");
+        user.setEmail("history@example.com");
+        user.setCreatedAt(LocalDateTime.now());
+        user.setDailyLimit(new BigDecimal("10000"));
+        userRepository.save(user);
+
+        // 100 to start with, then +10 on day 1, -5 on day 2 and +20 on day 3
+        account = createAccount(new BigDecimal("125.00"));
+        other = createAccount(new BigDecimal("50.00"));
+        ledgerEntryRepository.saveAll(List.of(
+                new LedgerEntry(null, account.getId(), 1L, new BigDecimal("10.00"), DAY_1),
+                new LedgerEntry(null, account.getId(), 2L, new BigDecimal("-5.00"), DAY_2),
+                new LedgerEntry(null, account.getId(), 3L, new BigDecimal("20.00"), DAY_3)));
+    }
+
+    private Account createAccount(BigDecimal balance) {
+        Account account = new Account();
+        account.setIban(IBANGenerator.generateIBAN());
+        account.setUser(user);
+        account.setAccountType(AccountType.CHECKING);
+        account.setBalance(balance);
+        account.setAbsoluteLimit(BigDecimal.ZERO);
+        account.setTransactionLimit(new BigDecimal("1000"));
+        account.setCreatedAt(LocalDateTime.now());
+        return accountRepository.save(account);
+    }
+
+    private void assertBalance(String expected, Account account, LocalDateTime at) {
+        assertEquals(0, new BigDecimal(expected).compareTo(ledgerService.getBalanceAt(account.getId(), at)));
+    }
+
+    private void assertBalanceHistory() {
+        assertBalance("100.00", account, DAY_1.minusHours(1));
+        assertBalance("110.00", account, DAY_1);
+        assertBalance("105.00", account, DAY_2.plusHours(1));
+        assertBalance("125.00", account, DAY_3.plusDays(1));
+        assertBalance("50.00", other, DAY_2);
+    }
+
+    @Test
+    void testTransferWritesTwoEntriesThatAddUpToZero() throws Exception {
+        ledgerEntryRepository.deleteAll();
+        Transaction transaction = new Transaction();
+        transaction.setFromAccount(account);
+        transaction.setToAccount(other);
+        transaction.setAmount(new BigDecimal("30.00"));
+
+        Transaction created = transactionService.createTransaction(transaction).get();
+
+        List<LedgerEntry> entries = ledgerEntryRepository.findAll();
+        assertEquals(2, entries.size());
+        assertEquals(0, BigDecimal.ZERO.compareTo(entries.get(0).getAmount().add(entries.get(1).getAmount())));
+        for (LedgerEntry entry : entries) {
+            assertEquals(created.getId(), entry.getTransactionId());
+            BigDecimal expected = entry.getAccountId().equals(account.getId()) ? new BigDecimal("-30.00")
+                    : new BigDecimal("30.00");
+            assertEquals(0, expected.compareTo(entry.getAmount()));
+        }
+    }
+
+    @Test
+    void testBalanceAtWithoutSnapshots() {
+        assertBalanceHistory();
+    }
+
+    @Test
+    void testBalanceAtIsTheSameAfterSnapshots() {
+        assertEquals(1, ledgerService.takeSnapshots(DAY_2.plusHours(1)));
+        assertEquals(0, new BigDecimal("105.00").compareTo(balanceSnapshotRepository.findAll().get(0).getBalance()));
+        assertBalanceHistory();
+
+        assertEquals(1, ledgerService.takeSnapshots(DAY_3.plusHours(1)));
+        assertEquals(0, new BigDecimal("125.00").compareTo(balanceSnapshotRepository
+                .findFirstByAccountIdAndTakenAtLessThanEqualOrderByTakenAtDesc(account.getId(), DAY_3.plusHours(1))
+                .get().getBalance()));
+        assertBalanceHistory();
+    }
+
+    @Test
+    void testSnapshotsOnlyCoverAccountsThatChanged() {
+        assertEquals(1, ledgerService.takeSnapshots(DAY_3.plusHours(1)));
+        // nothing new since then, and a run can not go back in time
+        assertEquals(0, ledgerService.takeSnapshots(DAY_3.plusHours(2)));
+        assertEquals(0, ledgerService.takeSnapshots(DAY_1));
+        assertEquals(1, balanceSnapshotRepository.count());
+    }
+
+    @Test
+    void testSnapshotWaitsForATransferThatIsStillRunning() throws Exception {
+        CountDownLatch transferred = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        // the transfer has its time and holds the rows, but takes its time to commit
+        Future<?> transfer = executor.submit(() -> new TransactionTemplate(transactionManager).executeWithoutResult(
+                status -> {
+                    try {
+                        Transaction transaction = new Transaction();
+                        transaction.setFromAccount(account);
+                        transaction.setToAccount(other);
+                        transaction.setAmount(new BigDecimal("30.00"));
+                        transactionService.createTransaction(transaction);
+                        transferred.countDown();
+                        commit.await();
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }));
+        transferred.await();
+        LocalDateTime upTo = LocalDateTime.now();
+        Future<Integer> snapshots = executor.submit(() -> ledgerService.takeSnapshots(upTo));
+        Thread.sleep(200);
+        commit.countDown();
+        transfer.get();
+        snapshots.get();
+        executor.shutdown();
+
+        assertEquals(0, new BigDecimal("95.00").compareTo(balanceSnapshotRepository
+                .findFirstByAccountIdAndTakenAtLessThanEqualOrderByTakenAtDesc(account.getId(), upTo)
+                .get().getBalance()));
+        assertBalance("95.00", account, upTo);
+        assertBalance("95.00", account, LocalDateTime.now());
+    }
+
+    @Test
+    void testSnapshotInTheFutureIsRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> ledgerService.takeSnapshots(LocalDateTime.now().plusMinutes(1)));
+    }
+
+    @Test
+    void testBalanceAtUnknownAccount() {
+        assertThrows(IllegalArgumentException.class, () -> ledgerService.getBalanceAt(-1L, DAY_1));
+    }
+}
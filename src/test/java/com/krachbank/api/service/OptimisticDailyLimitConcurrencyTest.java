@@ -0,0 +1,13 @@
+package com.krachbank.api.service;
+
+import org.springframework.test.context.TestPropertySource;
+
+// the same transfers as DailyLimitConcurrencyTest without row locks, two threads share every sending account
+// so the @Version check fails a lot and this allows more attempts than the default
+@TestPropertySource(properties = {
+        "application.transactions.locking=optimistic",
+        "application.transactions.retry.max-attempts=100",
+        "application.transactions.retry.backoff=PT0.001S",
+        "application.transactions.retry.max-backoff=PT0.02S" })
+public class OptimisticDailyLimitConcurrencyTest extends DailyLimitConcurrencyTest {
+}
@@ -0,0 +1,13 @@
+package com.krachbank.api.service;
+
+import org.springframework.test.context.TestPropertySource;
+
+// the same load as TransactionConcurrencyTest without row locks, races are caught by @Version and retried.
+// 8 threads on 4 accounts collide all the time, so this allows more attempts than the default
+@TestPropertySource(properties = {
+        "application.transactions.locking=optimistic",
+        "application.transactions.retry.max-attempts=100",
+        "application.transactions.retry.backoff=PT0.001S",
+        "application.transactions.retry.max-backoff=PT0.02S" })
+public class OptimisticTransactionConcurrencyTest extends TransactionConcurrencyTest {
+}
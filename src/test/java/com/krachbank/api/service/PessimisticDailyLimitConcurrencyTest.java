@@ -0,0 +1,8 @@
+package com.krachbank.api.service;
+
+import org.springframework.test.context.TestPropertySource;
+
+// the same transfers as DailyLimitConcurrencyTest with the accounts locked by SELECT ... FOR UPDATE
+@TestPropertySource(properties = "application.transactions.locking=pessimistic")
+public class PessimisticDailyLimitConcurrencyTest extends DailyLimitConcurrencyTest {
+}
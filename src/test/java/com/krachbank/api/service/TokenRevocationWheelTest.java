@@ -0,0 +1,101 @@
+package com.krachbank.api.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.krachbank.api.security.VerifiedToken;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class TokenRevocationWheelTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private TokenRevocationWheel wheel;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        // an hour of tokens in one second ticks
+        wheel = new TokenRevocationWheel(3_600_000, Duration.ofSeconds(1), meterRegistry);
+    }
+
+    private static VerifiedToken token(String id, long expiresInMillis) {
+        Claims claims = Jwts.claims();
+        claims.setId(id);
+        claims.setSubject("alice");
+        claims.setIssuedAt(new Date());
+        claims.setExpiration(new Date(System.currentTimeMillis() + expiresInMillis));
+        return VerifiedToken.of(claims);
+    }
+
+    @Test
+    void testOnlyTheRevokedTokenIsRevoked() {
+        VerifiedToken revoked = token(UUID.randomUUID().toString(), 60_000);
+        VerifiedToken other = token(UUID.randomUUID().toString(), 60_000);
+
+        wheel.revoke(revoked);
+
+        assertTrue(wheel.isRevoked(revoked));
+        assertFalse(wheel.isRevoked(other));
+        assertEquals(1, wheel.size());
+        assertEquals(1.0, meterRegistry.get("jwt.revoked-tokens").gauge().value());
+    }
+
+    @Test
+    void testManyTokensInOneSlot() {
+        List<VerifiedToken> tokens = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            tokens.add(token(UUID.randomUUID().toString(), 120_000));
+        }
+        tokens.forEach(wheel::revoke);
+
+        assertTrue(tokens.stream().allMatch(wheel::isRevoked));
+        assertEquals(1000, wheel.size());
+        assertFalse(wheel.isRevoked(token(UUID.randomUUID().toString(), 120_000)));
+    }
+
+    @Test
+    void testExpiredTokensAreDroppedOnAdvance() throws InterruptedException {
+        VerifiedToken shortLived = token(UUID.randomUUID().toString(), 100);
+        VerifiedToken longLived = token(UUID.randomUUID().toString(), 60_000);
+        wheel.revoke(shortLived);
+        wheel.revoke(longLived);
+
+        // past the tick the short lived token expires in
+        Thread.sleep(2_100);
+        wheel.advance();
+
+        assertEquals(1, wheel.size());
+        assertTrue(wheel.isRevoked(longLived));
+    }
+
+    @Test
+    void testTokensOutsideTheWheelAreStillRevoked() {
+        VerifiedToken issuedWithLongerExpiration = token(UUID.randomUUID().toString(), 7_200_000);
+
+        wheel.revoke(issuedWithLongerExpiration);
+
+        assertTrue(wheel.isRevoked(issuedWithLongerExpiration));
+    }
+
+    @Test
+    void testTokenWithoutIdIsRevokedBySubjectAndIssueTime() {
+        VerifiedToken legacy = token(null, 60_000);
+
+        wheel.revoke(legacy);
+
+        assertTrue(wheel.isRevoked(legacy));
+    }
+}
@@ -0,0 +1,112 @@
+package com.krachbank.api.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.krachbank.api.models.User;
+import com.krachbank.api.repository.AccountRepository;
+import com.krachbank.api.repository.DailySpendRepository;
+import com.krachbank.api.repository.IdempotencyKeyRepository;
+import com.krachbank.api.repository.TransactionRepository;
+import com.krachbank.api.repository.UserRepository;
+
+@DataJpaTest
+@Import(TokenVersionServiceJpa.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class TokenVersionServiceJpaTest {
+
+    @Autowired
+    private TokenVersionService tokenVersionService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private DailySpendRepository dailySpendRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        idempotencyKeyRepository.deleteAll();
+        transactionRepository.deleteAll();
+        dailySpendRepository.deleteAll();
+        accountRepository.deleteAll();
+        userRepository.deleteAll();
+
+        user = new User();
+        user.setUsername("versioned");
+        user.setPassword("secret");
+        user.setEmail("versioned@example.com");
+        user.setCreatedAt(LocalDateTime.now());
+        user.setDailyLimit(new BigDecimal("10000"));
+        userRepository.save(user);
+    }
+
+    @Test
+    void testNewUserIsOnVersionZero() {
+        assertEquals(0, userRepository.findTokenVersionById(user.getId()).orElseThrow());
+        assertEquals(0, tokenVersionService.currentVersion(user.getId()));
+    }
+
+    @Test
+    void testRevokeBumpsTheVersion() {
+        tokenVersionService.revokeTokens(user.getId());
+        tokenVersionService.revokeTokens(user.getId());
+
+        assertEquals(2, userRepository.findTokenVersionById(user.getId()).orElseThrow());
+        assertEquals(2, tokenVersionService.currentVersion(user.getId()));
+    }
+
+    @Test
+    void testRefreshPicksUpRevokesFromOtherInstances() {
+        // another instance revoked, this one only sees it in the database
+        new TransactionTemplate(transactionManager)
+                .executeWithoutResult(status -> userRepository.incrementTokenVersion(user.getId()));
+        int before = tokenVersionService.currentVersion(user.getId());
+
+        tokenVersionService.refresh();
+
+        assertEquals(0, before);
+        assertEquals(1, tokenVersionService.currentVersion(user.getId()));
+    }
+
+    @Test
+    void testSavingTheUserDoesNotResetTheVersion() {
+        tokenVersionService.revokeTokens(user.getId());
+        user.setFirstName("changed");
+        userRepository.save(user);
+
+        assertEquals(1, userRepository.findTokenVersionById(user.getId()).orElseThrow());
+    }
+
+    @Test
+    void testRevokeUnknownUserThrows() {
+        assertThrows(IllegalArgumentException.class, () -> tokenVersionService.revokeTokens(-1L));
+    }
+}
@@ -0,0 +1,169 @@
+package com.krachbank.api.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.krachbank.api.configuration.IBANGenerator;
+import com.krachbank.api.dto.BatchTransactionDTOResponse;
+import com.krachbank.api.models.Account;
+import com.krachbank.api.models.AccountType;
+import com.krachbank.api.models.Transaction;
+import com.krachbank.api.models.User;
+import com.krachbank.api.repository.AccountRepository;
+import com.krachbank.api.repository.DailySpendRepository;
+import com.krachbank.api.repository.TransactionRepository;
+import com.krachbank.api.repository.UserRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@DataJpaTest
+@Import({ TransactionJpa.class, TransactionBatchJpa.class, AccountServiceJpa.class, IdempotencyServiceJpa.class,
+        TransferRunner.class, LedgerServiceJpa.class, SimpleMeterRegistry.class })
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class TransactionBatchJpaTest {
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private TransactionBatchService transactionBatchService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private DailySpendRepository dailySpendRepository;
+
+    private User user;
+    private List<Account> accounts;
+
+    @BeforeEach
+    void setUp() {
+        transactionRepository.deleteAll();
+        dailySpendRepository.deleteAll();
+        accountRepository.deleteAll();
+        userRepository.deleteAll();
+
+        user = new User();
+        user.setUsername("payroll");
+        user.setPassword("secret");
+        user.setEmail("payroll@example.com");
+        user.setCreatedAt(LocalDateTime.now());
+        user.setDailyLimit(new BigDecimal("1000000000"));
+        userRepository.save(user);
+
+        accounts = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Account account = new Account();
+            account.setIban(IBANGenerator.generateIBAN());
+            account.setUser(user);
+            account.setAccountType(AccountType.CHECKING);
+            account.setBalance(new BigDecimal("1000000.00"));
+            account.setAbsoluteLimit(BigDecimal.ZERO);
+            account.setTransactionLimit(new BigDecimal("1000000"));
+            account.setCreatedAt(LocalDateTime.now());
+            accounts.add(accountRepository.save(account));
+        }
+    }
+
+    private Transaction transfer(int from, int to, String amount) {
+        Transaction transaction = new Transaction();
+        transaction.setFromAccount(accounts.get(from));
+        transaction.setToAccount(accounts.get(to));
+        transaction.setInitiator(user);
+        transaction.setAmount(new BigDecimal(amount));
+        transaction.setCreatedAt(LocalDateTime.now());
+        return transaction;
+    }
+
+    private BigDecimal balanceOf(int account) {
+        return accountRepository.findById(accounts.get(account).getId()).get().getBalance();
+    }
+
+    @Test
+    void testCreateTransactionsReturnsResultPerTransferAndSkipsInvalidOnes() {
+        List<Transaction> transactions = List.of(
+                transfer(0, 1, "100.00"),
+                transfer(0, 1, "2000000.00"), // more then the balance
+                transfer(1, 2, "50.00"));
+
+        List<BatchTransactionDTOResponse> results = transactionBatchService.createTransactions(transactions);
+
+        assertEquals(3, results.size());
+        assertTrue(results.get(0).isSuccess());
+        assertFalse(results.get(1).isSuccess());
+        assertEquals("cant spend more then the absolute limit", results.get(1).getError());
+        assertTrue(results.get(2).isSuccess());
+        assertEquals(2, results.get(2).getIndex());
+
+        assertEquals(2, transactionRepository.count());
+        assertEquals(0, new BigDecimal("999900.00").compareTo(balanceOf(0)));
+        assertEquals(0, new BigDecimal("1000050.00").compareTo(balanceOf(1)));
+        assertEquals(0, new BigDecimal("1000050.00").compareTo(balanceOf(2)));
+        assertEquals(0, new BigDecimal("150.00")
+                .compareTo(transactionService.getUserTotalAmountSpendAtDate(user, LocalDateTime.now())));
+    }
+
+    @Test
+    void testTransferNotByTheOwnerCountsTheSpendEarlierInTheChunk() {
+        user.setDailyLimit(new BigDecimal("1000"));
+        userRepository.save(user);
+        Transaction byOwner = transfer(0, 1, "600.00");
+        Transaction byBank = transfer(2, 3, "600.00");
+        byBank.setInitiator(null);
+
+        List<BatchTransactionDTOResponse> results = transactionBatchService
+                .createTransactions(List.of(byOwner, byBank));
+
+        assertTrue(results.get(0).isSuccess());
+        assertFalse(results.get(1).isSuccess());
+        assertEquals("daily limit reached", results.get(1).getError());
+        assertEquals(1, transactionRepository.count());
+        assertEquals(0, new BigDecimal("600.00")
+                .compareTo(transactionService.getUserTotalAmountSpendAtDate(user, LocalDateTime.now())));
+    }
+
+    // the throughput against single transfers is in TransactionBatchBenchmark
+    @Test
+    void testBatchOfManyTransfersKeepsTheBalances() {
+        int count = 50;
+        List<Transaction> batch = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            batch.add(transfer(i % 10, (i + 1) % 10, "1.00"));
+        }
+
+        List<BatchTransactionDTOResponse> results = transactionBatchService.createTransactions(batch);
+
+        assertTrue(results.stream().allMatch(BatchTransactionDTOResponse::isSuccess));
+        assertEquals(count, transactionRepository.count());
+        for (int i = 0; i < 10; i++) {
+            // every account sends and receives 5 transfers of 1
+            assertEquals(0, new BigDecimal("1000000.00").compareTo(balanceOf(i)));
+        }
+        assertEquals(0, new BigDecimal("50.00")
+                .compareTo(transactionService.getUserTotalAmountSpendAtDate(user, LocalDateTime.now())));
+    }
+}
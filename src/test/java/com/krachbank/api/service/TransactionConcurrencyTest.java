@@ -0,0 +1,147 @@
+package com.krachbank.api.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.krachbank.api.configuration.IBANGenerator;
+import com.krachbank.api.models.Account;
+import com.krachbank.api.models.AccountType;
+import com.krachbank.api.models.Transaction;
+import com.krachbank.api.models.User;
+import com.krachbank.api.repository.AccountRepository;
+import com.krachbank.api.repository.DailySpendRepository;
+import com.krachbank.api.repository.TransactionRepository;
+import com.krachbank.api.repository.UserRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// runs real transfers from multiple threads against h2, every transfer has to commit on its own.
+// this runs the default conditional updates, the subclasses the other locking modes.
+// the throughput under contention is in TransferContentionBenchmark
+@DataJpaTest
+@Import({ TransactionJpa.class, AccountServiceJpa.class, IdempotencyServiceJpa.class,
+        TransferRunner.class, LedgerServiceJpa.class, SimpleMeterRegistry.class })
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class TransactionConcurrencyTest {
+
+    private static final int ACCOUNTS = 4;
+    private static final int THREADS = 8;
+    private static final int TRANSFERS_PER_THREAD = 20;
+    private static final BigDecimal START_BALANCE = new BigDecimal("1000.00");
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private DailySpendRepository dailySpendRepository;
+
+    private List<Account> accounts;
+
+    @BeforeEach
+    void setUp() {
+        transactionRepository.deleteAll();
+        dailySpendRepository.deleteAll();
+        accountRepository.deleteAll();
+        userRepository.deleteAll();
+
+        User user = new User();
+        user.setUsername("stress");
+        user.setPassword("secret");
+        user.setEmail("stress@example.com");
+        user.setCreatedAt(LocalDateTime.now());
+        user.setDailyLimit(new BigDecimal("1000000000"));
+        userRepository.save(user);
+
+        accounts = new ArrayList<>();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            Account account = new Account();
+            account.setIban(IBANGenerator.generateIBAN());
+            account.setUser(user);
+            account.setAccountType(AccountType.CHECKING);
+            account.setBalance(START_BALANCE);
+            account.setAbsoluteLimit(BigDecimal.ZERO);
+            account.setTransactionLimit(new BigDecimal("1000000"));
+            account.setCreatedAt(LocalDateTime.now());
+            accounts.add(accountRepository.save(account));
+        }
+    }
+
+    @Test
+    void testConcurrentTransfersKeepTotalBalanceAndLimits() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            long seed = t;
+            futures.add(executor.submit(() -> {
+                Random random = new Random(seed);
+                for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                    int from = random.nextInt(ACCOUNTS);
+                    int to = (from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+
+                    Transaction transaction = new Transaction();
+                    transaction.setFromAccount(accounts.get(from));
+                    transaction.setToAccount(accounts.get(to));
+                    transaction.setAmount(BigDecimal.valueOf(1 + random.nextInt(400)));
+                    transaction.setCreatedAt(LocalDateTime.now());
+                    try {
+                        transactionService.createTransaction(transaction);
+                        succeeded.incrementAndGet();
+                    } catch (Exception e) {
+                        // not enough balance is expected, anything else is a real failure
+                        if (!"cant spend more then the absolute limit".equals(e.getMessage())) {
+                            throw new IllegalStateException(e);
+                        }
+                        rejected.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        BigDecimal total = BigDecimal.ZERO;
+        for (Account account : accountRepository.findAll()) {
+            assertTrue(account.getBalance().compareTo(account.getAbsoluteLimit()) >= 0,
+                    "account went below its absolute limit");
+            total = total.add(account.getBalance());
+        }
+        assertEquals(0, START_BALANCE.multiply(BigDecimal.valueOf(ACCOUNTS)).compareTo(total));
+        assertEquals(succeeded.get(), transactionRepository.count());
+        assertEquals(THREADS * TRANSFERS_PER_THREAD, succeeded.get() + rejected.get());
+    }
+}
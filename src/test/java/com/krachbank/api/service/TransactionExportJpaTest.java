@@ -0,0 +1,152 @@
+package com.krachbank.api.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.krachbank.api.configuration.IBANGenerator;
+import com.krachbank.api.models.Account;
+import com.krachbank.api.models.AccountType;
+import com.krachbank.api.models.Transaction;
+import com.krachbank.api.models.User;
+import com.krachbank.api.repository.AccountRepository;
+import com.krachbank.api.repository.DailySpendRepository;
+import com.krachbank.api.repository.TransactionRepository;
+import com.krachbank.api.repository.UserRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@DataJpaTest
+@Import({ TransactionExportJpa.class, TransactionJpa.class, AccountServiceJpa.class, IdempotencyServiceJpa.class,
+        TransferRunner.class, LedgerServiceJpa.class, SimpleMeterRegistry.class })
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class TransactionExportJpaTest {
+
+    // more than one fetch size so the persistence context is cleared in between
+    private static final int TRANSACTIONS = TransactionRepository.EXPORT_FETCH_SIZE + 250;
+    private static final LocalDateTime START = LocalDateTime.of(2025, 3, 1, 9, 0);
+
+    @Autowired
+    private TransactionExportService transactionExportService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private DailySpendRepository dailySpendRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private Account fromAccount;
+    private Account toAccount;
+
+    @BeforeEach
+    void setUp() {
+        transactionRepository.deleteAll();
+        dailySpendRepository.deleteAll();
+        accountRepository.deleteAll();
+        userRepository.deleteAll();
+
+        User user = new User();
+        user.setUsername("auditor");
+        user.setPassword("secret");
+        user.setEmail("auditor@example.com");
+        user.setCreatedAt(LocalDateTime.now());
+        userRepository.save(user);
+
+        fromAccount = createAccount(user);
+        toAccount = createAccount(user);
+
+        List<Transaction> transactions = new java.util.ArrayList<>();
+        for (int i = 0; i < TRANSACTIONS; i++) {
+            Transaction transaction = new Transaction();
+            transaction.setFromAccount(fromAccount);
+            transaction.setToAccount(toAccount);
+            transaction.setInitiator(user);
+            transaction.setAmount(BigDecimal.valueOf(i + 1));
+            transaction.setCreatedAt(START.plusMinutes(i));
+            transaction.setDescription(i == 0 ? "rent, march \"2025\"" : "transfer " + i);
+            transactions.add(transaction);
+        }
+        transactionRepository.saveAll(transactions);
+    }
+
+    private Account createAccount(User user) {
+        Account account = new Account();
+        account.setIban(IBANGenerator.generateIBAN());
+        account.setUser(user);
+        account.setAccountType(AccountType.CHECKING);
+        account.setBalance(new BigDecimal("100.00"));
+        account.setAbsoluteLimit(BigDecimal.ZERO);
+        account.setCreatedAt(LocalDateTime.now());
+        return accountRepository.save(account);
+    }
+
+    private List<String> export(LocalDateTime from, LocalDateTime to, String format) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        transactionExportService.exportTransactions(from, to, format, out);
+        return out.toString(StandardCharsets.UTF_8).lines().toList();
+    }
+
+    @Test
+    void testNdjsonExportHasOneJsonObjectPerTransactionOldestFirst() throws Exception {
+        List<String> lines = export(null, null, TransactionExportService.FORMAT_NDJSON);
+
+        assertEquals(TRANSACTIONS, lines.size());
+        JsonNode first = objectMapper.readTree(lines.get(0));
+        assertEquals(fromAccount.getIban().toString(), first.get("sender").asText());
+        assertEquals(toAccount.getIban().toString(), first.get("receiver").asText());
+        assertEquals(0, BigDecimal.ONE.compareTo(first.get("amount").decimalValue()));
+        JsonNode last = objectMapper.readTree(lines.get(lines.size() - 1));
+        assertEquals(0, BigDecimal.valueOf(TRANSACTIONS).compareTo(last.get("amount").decimalValue()));
+    }
+
+    @Test
+    void testCsvExportHasHeaderAndQuotesDescriptions() throws Exception {
+        List<String> lines = export(null, null, TransactionExportService.FORMAT_CSV);
+
+        assertEquals(TRANSACTIONS + 1, lines.size());
+        assertEquals("createdAt,amount,sender,receiver,initiator,description", lines.get(0));
+        assertTrue(lines.get(1).endsWith(",\"rent, march \"\"2025\"\"\""), lines.get(1));
+    }
+
+    @Test
+    void testExportOnlyIncludesTheRequestedPeriod() throws Exception {
+        List<String> lines = export(START.plusMinutes(10), START.plusMinutes(20), TransactionExportService.FORMAT_CSV);
+
+        assertEquals(10 + 1, lines.size());
+        assertTrue(lines.get(1).startsWith(START.plusMinutes(10).toString()));
+    }
+
+    @Test
+    void testExportRejectsUnknownFormat() {
+        assertThrows(IllegalArgumentException.class,
+                () -> transactionExportService.exportTransactions(null, null, "xml", new ByteArrayOutputStream()));
+    }
+}
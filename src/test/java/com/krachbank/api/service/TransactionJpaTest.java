@@ -4,10 +4,15 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
@@ -16,21 +21,31 @@ import java.util.Optional;
 import org.iban4j.Iban;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import com.krachbank.api.dto.TransactionDTOResponse;
 import com.krachbank.api.filters.TransactionFilter;
 import com.krachbank.api.models.Account;
 import com.krachbank.api.models.Transaction;
+import com.krachbank.api.models.DailySpend;
 import com.krachbank.api.models.User;
+import com.krachbank.api.repository.DailySpendRepository;
 import com.krachbank.api.repository.TransactionRepository;
 import com.krachbank.api.models.AccountType;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
 public class TransactionJpaTest {
 
     TransactionJpa transactionService;
     AccountServiceJpa accountService;
     TransactionRepository transactionRepository;
+    DailySpendRepository dailySpendRepository;
+    IdempotencyService idempotencyService;
     TransactionFilter transactionFilter;
 
     Transaction fullTransaction;
@@ -43,8 +58,14 @@ public class TransactionJpaTest {
         transactionRepository = mock(TransactionRepository.class);
         accountService = mock(AccountServiceJpa.class);
         transactionFilter = mock(TransactionFilter.class);
+        dailySpendRepository = mock(DailySpendRepository.class);
+
+        idempotencyService = mock(IdempotencyService.class);
 
-        transactionService = new TransactionJpa(transactionRepository, accountService);
+        TransferRunner transferRunner = new TransferRunner(mock(PlatformTransactionManager.class), "pessimistic", 3,
+                Duration.ZERO, Duration.ZERO, new SimpleMeterRegistry());
+        transactionService = new TransactionJpa(transactionRepository, accountService, dailySpendRepository,
+                idempotencyService, transferRunner, mock(LedgerService.class));
 
         Iban iban = Iban.valueOf("DE32500211205487556354");
         Iban iban2 = Iban.valueOf("DE52500202006796187625");
@@ -108,6 +129,8 @@ public class TransactionJpaTest {
         when(transactionRepository.findAll((org.springframework.data.jpa.domain.Specification<Transaction>) any()))
                 .thenReturn(transactions);
 
+        when(accountService.lockAccount(any(Account.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
         when(transactionRepository.findOne((org.springframework.data.jpa.domain.Specification<Transaction>) any()))
                 .thenReturn(Optional.of(fullTransaction));
     }
@@ -305,15 +328,9 @@ public class TransactionJpaTest {
 
         User user = fullTransaction.getInitiator();
         LocalDateTime date = fullTransaction.getCreatedAt();
-        fullTransaction.setCreatedAt(date);
-        fullTransaction.setAmount(BigDecimal.valueOf(100.00));
-        fullTransaction3.setCreatedAt(date);
-        fullTransaction3.setAmount(BigDecimal.valueOf(150.00));
 
-        List<Transaction> testTransactions = List.of(fullTransaction, fullTransaction3);
-
-        when(transactionRepository.findByInitiatorIdOrderByCreatedAtAsc(user.getId()))
-                .thenReturn(testTransactions);
+        when(dailySpendRepository.findByUserIdAndSpendDate(user.getId(), date.toLocalDate()))
+                .thenReturn(Optional.of(new DailySpend(1L, user.getId(), date.toLocalDate(), new BigDecimal("250.0"))));
 
         BigDecimal total = transactionService.getUserTotalAmountSpendAtDate(user, date);
 
@@ -322,23 +339,18 @@ public class TransactionJpaTest {
 
     @Test
     void testGetUserTotalAmountSpendAtDateWithTransactionsOnDifferentDays() {
-        Transaction transaction1 = fullTransaction;
-        Transaction transaction2 = fullTransaction2;
-        transaction2.setCreatedAt(transaction1.getCreatedAt().minusDays(1));
-        transaction1.setAmount(new BigDecimal("100.00"));
-        transaction2.setAmount(new BigDecimal("200.00"));
-
         User user = fullTransaction.getInitiator();
         LocalDateTime date = fullTransaction.getCreatedAt();
 
-        List<Transaction> userTransactions = List.of(transaction1, transaction2);
-
-        when(transactionRepository.findByInitiatorIdOrderByCreatedAtAsc(user.getId()))
-                .thenReturn(userTransactions);
+        when(dailySpendRepository.findByUserIdAndSpendDate(user.getId(), date.minusDays(1).toLocalDate()))
+                .thenReturn(Optional.of(new DailySpend(1L, user.getId(), date.minusDays(1).toLocalDate(),
+                        new BigDecimal("200.00"))));
+        when(dailySpendRepository.findByUserIdAndSpendDate(user.getId(), date.toLocalDate()))
+                .thenReturn(Optional.of(new DailySpend(2L, user.getId(), date.toLocalDate(), new BigDecimal("100.00"))));
 
         BigDecimal total = transactionService.getUserTotalAmountSpendAtDate(user, date);
 
-        assertEquals(transaction1.getAmount(), total);
+        assertEquals(new BigDecimal("100.00"), total);
     }
 
     @Test
@@ -347,14 +359,65 @@ public class TransactionJpaTest {
         user.setId(100L);
         LocalDateTime date = LocalDateTime.of(2024, 6, 10, 12, 0);
 
-        when(transactionRepository.findByInitiatorIdOrderByCreatedAtAsc(user.getId()))
-                .thenReturn(new ArrayList<>());
+        when(dailySpendRepository.findByUserIdAndSpendDate(user.getId(), date.toLocalDate()))
+                .thenReturn(Optional.empty());
 
         BigDecimal total = transactionService.getUserTotalAmountSpendAtDate(user, date);
 
         assertEquals(BigDecimal.ZERO, total);
     }
 
+    @Test
+    void testLockAccountsLocksLowestIdFirst() {
+        Account sendingAccount = fullTransaction2.getFromAccount(); // id 20
+        Account receivingAccount = fullTransaction2.getToAccount(); // id 10
+
+        Account[] locked = transactionService.lockAccounts(sendingAccount, receivingAccount);
+
+        InOrder lockOrder = inOrder(accountService);
+        lockOrder.verify(accountService).lockAccount(receivingAccount);
+        lockOrder.verify(accountService).lockAccount(sendingAccount);
+        assertEquals(sendingAccount, locked[0]);
+        assertEquals(receivingAccount, locked[1]);
+    }
+
+    @Test
+    void testAddToDailySpendCreatesCounterForFirstTransferOfTheDay() {
+        User user = fullTransaction.getInitiator();
+        LocalDate date = LocalDate.of(2024, 6, 10);
+
+        when(dailySpendRepository.addToTotal(user.getId(), date, new BigDecimal("100.00"))).thenReturn(0);
+
+        transactionService.addToDailySpend(user, date, new BigDecimal("100.00"));
+
+        verify(dailySpendRepository).saveAndFlush(new DailySpend(null, user.getId(), date, new BigDecimal("100.00")));
+    }
+
+    @Test
+    void testAddToDailySpendRetriesWhenCounterWasCreatedConcurrently() {
+        User user = fullTransaction.getInitiator();
+        LocalDate date = LocalDate.of(2024, 6, 10);
+
+        when(dailySpendRepository.addToTotal(user.getId(), date, new BigDecimal("100.00"))).thenReturn(0);
+        when(dailySpendRepository.saveAndFlush(any(DailySpend.class)))
+                .thenThrow(new DataIntegrityViolationException("duplicate daily spend"));
+
+        assertThrows(ConcurrencyFailureException.class,
+                () -> transactionService.addToDailySpend(user, date, new BigDecimal("100.00")));
+    }
+
+    @Test
+    void testAddToDailySpendUpdatesExistingCounter() {
+        User user = fullTransaction.getInitiator();
+        LocalDate date = LocalDate.of(2024, 6, 10);
+
+        when(dailySpendRepository.addToTotal(user.getId(), date, new BigDecimal("100.00"))).thenReturn(1);
+
+        transactionService.addToDailySpend(user, date, new BigDecimal("100.00"));
+
+        verify(dailySpendRepository, never()).saveAndFlush(any(DailySpend.class));
+    }
+
     @Test
     void testGetUserTotalAmountSpendAtDateWithNullUser() {
         LocalDateTime date = LocalDateTime.of(2024, 6, 10, 12, 0);
@@ -584,8 +647,8 @@ public class TransactionJpaTest {
 
         transaction.setAmount(new BigDecimal("100.00"));
 
-        when(transactionRepository.findByInitiatorIdOrderByCreatedAtAsc(from.getUser().getId()))
-                .thenReturn(List.of(transaction));
+        when(dailySpendRepository.findByUserIdAndSpendDate(from.getUser().getId(), LocalDate.now()))
+                .thenReturn(Optional.of(new DailySpend(1L, from.getUser().getId(), LocalDate.now(), transaction.getAmount())));
 
        Exception exception = assertThrows(Exception.class, () -> transactionService.createTransaction(transaction));
         assertEquals("daily limit reached", exception.getMessage());
@@ -0,0 +1,300 @@
+package com.krachbank.api.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.krachbank.api.configuration.IBANGenerator;
+import com.krachbank.api.dto.BatchTransactionDTOResponse;
+import com.krachbank.api.dto.TransactionDTOResponse;
+import com.krachbank.api.models.Account;
+import com.krachbank.api.models.AccountType;
+import com.krachbank.api.models.Transaction;
+import com.krachbank.api.models.User;
+import com.krachbank.api.repository.AccountRepository;
+import com.krachbank.api.repository.DailySpendRepository;
+import com.krachbank.api.repository.TransactionRepository;
+import com.krachbank.api.repository.UserRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// same load as TransactionConcurrencyTest but every transfer goes through the partitioned pipeline.
+// the throughput against a transfer per request is in TransactionPipelineBenchmark
+@DataJpaTest
+@Import({ TransactionPipelineImpl.class, TransactionBatchJpa.class, TransactionJpa.class, AccountServiceJpa.class,
+        IdempotencyServiceJpa.class, TransferRunner.class, LedgerServiceJpa.class, SimpleMeterRegistry.class })
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@TestPropertySource(properties = {
+        "application.transactions.pipeline.enabled=true",
+        "application.transactions.pipeline.partitions=2" })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class TransactionPipelineImplTest {
+
+    private static final int ACCOUNTS = 4;
+    private static final int THREADS = 8;
+    private static final int TRANSFERS_PER_THREAD = 20;
+    private static final BigDecimal START_BALANCE = new BigDecimal("1000.00");
+
+    @Autowired
+    private TransactionPipelineImpl transactionPipeline;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private DailySpendRepository dailySpendRepository;
+
+    private User user;
+    private List<Account> accounts;
+
+    @BeforeEach
+    void setUp() {
+        transactionRepository.deleteAll();
+        dailySpendRepository.deleteAll();
+        accountRepository.deleteAll();
+        userRepository.deleteAll();
+
+        user = new User();
+        user.setUsername("pipeline");
+        user.setPassword("secret");
+        user.setEmail("pipeline@example.com");
+        user.setCreatedAt(LocalDateTime.now());
+        user.setDailyLimit(new BigDecimal("1000000000"));
+        userRepository.save(user);
+
+        accounts = new ArrayList<>();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            Account account = new Account();
+            account.setIban(IBANGenerator.generateIBAN());
+            account.setUser(user);
+            account.setAccountType(AccountType.CHECKING);
+            account.setBalance(START_BALANCE);
+            account.setAbsoluteLimit(BigDecimal.ZERO);
+            account.setTransactionLimit(new BigDecimal("1000000"));
+            account.setCreatedAt(LocalDateTime.now());
+            accounts.add(accountRepository.save(account));
+        }
+    }
+
+    private Transaction transfer(int from, int to, BigDecimal amount) {
+        Transaction transaction = new Transaction();
+        transaction.setFromAccount(accounts.get(from));
+        transaction.setToAccount(accounts.get(to));
+        transaction.setInitiator(user);
+        transaction.setAmount(amount);
+        transaction.setCreatedAt(LocalDateTime.now());
+        return transaction;
+    }
+
+    @Test
+    void testSubmitCompletesWithTheCreatedTransfer() throws Exception {
+        TransactionDTOResponse created = transactionPipeline.submit(transfer(0, 1, new BigDecimal("10.00"))).get();
+
+        assertEquals(0, new BigDecimal("10.00").compareTo(created.getAmount()));
+        assertEquals(0, new BigDecimal("990.00")
+                .compareTo(accountRepository.findById(accounts.get(0).getId()).get().getBalance()));
+    }
+
+    @Test
+    void testSubmitFailsOnlyTheRejectedTransfer() throws Exception {
+        CompletableFuture<TransactionDTOResponse> tooBig = transactionPipeline
+                .submit(transfer(0, 1, new BigDecimal("5000.00")));
+        CompletableFuture<TransactionDTOResponse> fine = transactionPipeline
+                .submit(transfer(0, 1, new BigDecimal("5.00")));
+
+        ExecutionException e = assertThrows(ExecutionException.class, tooBig::get);
+        assertEquals("cant spend more then the absolute limit", e.getCause().getMessage());
+        assertNotNull(fine.get());
+        assertEquals(1, transactionRepository.count());
+    }
+
+    // every transfer succeeds, after a while
+    private TransactionBatchService succeedingBatchService(long millis) {
+        TransactionBatchService batchService = mock(TransactionBatchService.class);
+        when(batchService.createTransactions(any())).thenAnswer(invocation -> {
+            Thread.sleep(millis);
+            List<BatchTransactionDTOResponse> results = new ArrayList<>();
+            for (int i = 0; i < invocation.<List<?>>getArgument(0).size(); i++) {
+                results.add(new BatchTransactionDTOResponse(i, true, new TransactionDTOResponse(), null));
+            }
+            return results;
+        });
+        return batchService;
+    }
+
+    @Test
+    void testStopCommitsWhatIsStillQueued() throws Exception {
+        TransactionPipelineImpl pipeline = new TransactionPipelineImpl(succeedingBatchService(20), true, 1, 1,
+                10_000, Duration.ofSeconds(10));
+        pipeline.start();
+        List<CompletableFuture<TransactionDTOResponse>> submitted = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            submitted.add(pipeline.submit(transfer(0, 1, BigDecimal.ONE)));
+        }
+
+        pipeline.stop();
+
+        for (CompletableFuture<TransactionDTOResponse> future : submitted) {
+            assertTrue(future.isDone(), "a submit was never completed");
+            assertFalse(future.isCompletedExceptionally(), "a queued transfer was dropped");
+        }
+    }
+
+    @Test
+    void testStopFailsWhatIsLeftAfterTheTimeout() throws Exception {
+        TransactionPipelineImpl pipeline = new TransactionPipelineImpl(succeedingBatchService(200), true, 1, 1,
+                10_000, Duration.ofMillis(50));
+        pipeline.start();
+        List<CompletableFuture<TransactionDTOResponse>> submitted = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            submitted.add(pipeline.submit(transfer(0, 1, BigDecimal.ONE)));
+        }
+
+        pipeline.stop();
+
+        // a commit takes longer then the timeout, so the last one never started
+        ExecutionException e = assertThrows(ExecutionException.class, () -> submitted.get(4).get());
+        assertEquals("transfer pipeline is stopped", e.getCause().getMessage());
+    }
+
+    // every partition commits its own batches, the owner still can not go over his daily limit
+    @Test
+    void testDailyLimitHoldsAcrossPartitions() throws Exception {
+        user.setDailyLimit(new BigDecimal("1000"));
+        userRepository.save(user);
+        List<CompletableFuture<TransactionDTOResponse>> submitted = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            for (int from = 0; from < ACCOUNTS; from++) {
+                submitted.add(transactionPipeline.submit(transfer(from, (from + 1) % ACCOUNTS,
+                        new BigDecimal("50.00"))));
+            }
+        }
+
+        int succeeded = 0;
+        for (CompletableFuture<TransactionDTOResponse> future : submitted) {
+            try {
+                future.get();
+                succeeded++;
+            } catch (ExecutionException e) {
+                assertEquals("daily limit reached", e.getCause().getMessage());
+            }
+        }
+
+        // the total has to stay below 1000
+        assertEquals(19, succeeded);
+        assertEquals(0, new BigDecimal("950.00").compareTo(dailySpendRepository
+                .findByUserIdAndSpendDate(user.getId(), LocalDate.now()).orElseThrow().getTotal()));
+    }
+
+    @Test
+    void testNoSubmitIsLeftOpenWhenThePipelineStops() throws Exception {
+        TransactionPipelineImpl pipeline = new TransactionPipelineImpl(succeedingBatchService(0), true, 2, 32,
+                10_000, Duration.ofSeconds(10));
+        pipeline.start();
+
+        // submits keep coming in while the pipeline stops
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<CompletableFuture<TransactionDTOResponse>> submitted = new CopyOnWriteArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            executor.submit(() -> {
+                CompletableFuture<TransactionDTOResponse> future;
+                do {
+                    future = pipeline.submit(transfer(0, 1, BigDecimal.ONE));
+                    submitted.add(future);
+                } while (!future.isCompletedExceptionally());
+            });
+        }
+        Thread.sleep(5);
+        pipeline.stop();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        for (CompletableFuture<TransactionDTOResponse> future : submitted) {
+            assertTrue(future.isDone(), "a submit was never completed");
+        }
+    }
+
+    @Test
+    void testConcurrentSubmitsKeepTotalBalanceAndLimits() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            long seed = t;
+            futures.add(executor.submit(() -> {
+                Random random = new Random(seed);
+                for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                    int from = random.nextInt(ACCOUNTS);
+                    int to = (from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+                    try {
+                        transactionPipeline.submit(transfer(from, to, BigDecimal.valueOf(1 + random.nextInt(400))))
+                                .get();
+                        succeeded.incrementAndGet();
+                    } catch (ExecutionException e) {
+                        // not enough balance is expected, anything else is a real failure
+                        if (!"cant spend more then the absolute limit".equals(e.getCause().getMessage())) {
+                            throw new IllegalStateException(e.getCause());
+                        }
+                        rejected.incrementAndGet();
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        BigDecimal total = BigDecimal.ZERO;
+        for (Account account : accountRepository.findAll()) {
+            assertTrue(account.getBalance().compareTo(account.getAbsoluteLimit()) >= 0,
+                    "account went below its absolute limit");
+            total = total.add(account.getBalance());
+        }
+        assertEquals(0, START_BALANCE.multiply(BigDecimal.valueOf(ACCOUNTS)).compareTo(total));
+        assertEquals(succeeded.get(), transactionRepository.count());
+        assertEquals(THREADS * TRANSFERS_PER_THREAD, succeeded.get() + rejected.get());
+    }
+}
@@ -0,0 +1,165 @@
+package com.krachbank.api.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.krachbank.api.configuration.IBANGenerator;
+import com.krachbank.api.dto.TransactionDTOResponse;
+import com.krachbank.api.filters.TransactionFilter;
+import com.krachbank.api.models.Account;
+import com.krachbank.api.models.AccountType;
+import com.krachbank.api.models.Transaction;
+import com.krachbank.api.models.User;
+import com.krachbank.api.repository.AccountRepository;
+import com.krachbank.api.repository.DailySpendRepository;
+import com.krachbank.api.repository.TransactionRepository;
+import com.krachbank.api.repository.UserRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import jakarta.persistence.EntityManagerFactory;
+
+// loading a page and mapping it to dtos has to cost the same number of statements for 10 or 100 rows
+@DataJpaTest
+@Import({ TransactionJpa.class, AccountServiceJpa.class, IdempotencyServiceJpa.class,
+        TransferRunner.class, LedgerServiceJpa.class, SimpleMeterRegistry.class })
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class TransactionQueryCountTest {
+
+    // page select and count plus some slack, never one per row
+    private static final long MAX_STATEMENTS = 5;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private DailySpendRepository dailySpendRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        transactionRepository.deleteAll();
+        dailySpendRepository.deleteAll();
+        accountRepository.deleteAll();
+        userRepository.deleteAll();
+
+        // every transaction has its own initiator and accounts, the worst case for n+1
+        LocalDateTime start = LocalDateTime.of(2025, 1, 1, 0, 0);
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            User user = new User();
+            user.setUsername("user" + i);
+            user.setPassword("secret");
+            user.setEmail("user" + i + "@example.com");
+            user.setCreatedAt(start);
+            userRepository.save(user);
+
+            Transaction transaction = new Transaction();
+            transaction.setInitiator(user);
+            transaction.setFromAccount(createAccount(user));
+            transaction.setToAccount(createAccount(user));
+            transaction.setAmount(BigDecimal.ONE);
+            transaction.setCreatedAt(start.plusMinutes(i));
+            transactions.add(transaction);
+        }
+        transactionRepository.saveAll(transactions);
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    private Account createAccount(User user) {
+        Account account = new Account();
+        account.setIban(IBANGenerator.generateIBAN());
+        account.setUser(user);
+        account.setAccountType(AccountType.CHECKING);
+        account.setBalance(BigDecimal.ZERO);
+        account.setAbsoluteLimit(BigDecimal.ZERO);
+        account.setCreatedAt(LocalDateTime.now());
+        return accountRepository.save(account);
+    }
+
+    // statements for loading one page and mapping it, like the controller does in a single request
+    private long statementsFor(Supplier<List<Transaction>> load, int expectedRows) {
+        statistics.clear();
+        List<TransactionDTOResponse> dtos = transactionTemplate.execute(status -> transactionService.toDTO(load.get()));
+        assertEquals(expectedRows, dtos.size());
+        return statistics.getPrepareStatementCount();
+    }
+
+    private TransactionFilter filter(int limit) {
+        TransactionFilter filter = new TransactionFilter();
+        filter.setLimit(limit);
+        filter.setPage(1);
+        return filter;
+    }
+
+    @Test
+    void testGetTransactionsByFilterUsesBoundedStatements() {
+        long small = statementsFor(() -> transactionService.getTransactionsByFilter(filter(10)).getContent(), 10);
+        long large = statementsFor(() -> transactionService.getTransactionsByFilter(filter(100)).getContent(), 100);
+
+        assertEquals(small, large);
+        assertTrue(large <= MAX_STATEMENTS, large + " statements");
+    }
+
+    @Test
+    void testGetAllTransactionsUsesBoundedStatements() {
+        long small = statementsFor(() -> transactionService.getAllTransactions(filter(10)).getContent(), 10);
+        long large = statementsFor(() -> transactionService.getAllTransactions(filter(100)).getContent(), 100);
+
+        assertEquals(small, large);
+        assertTrue(large <= MAX_STATEMENTS, large + " statements");
+    }
+
+    @Test
+    void testGetTransactionsByCursorUsesBoundedStatements() {
+        TransactionFilter small = filter(10);
+        small.setPage(null);
+        TransactionFilter large = filter(100);
+        large.setPage(null);
+
+        long smallCount = statementsFor(() -> transactionService.getTransactionsByCursor(small).getContent(), 10);
+        long largeCount = statementsFor(() -> transactionService.getTransactionsByCursor(large).getContent(), 100);
+
+        assertEquals(smallCount, largeCount);
+        assertTrue(largeCount <= MAX_STATEMENTS, largeCount + " statements");
+    }
+}
@@ -0,0 +1,102 @@
+package com.krachbank.api.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.krachbank.api.models.Account;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class TransferRunnerTest {
+
+    private PlatformTransactionManager transactionManager;
+    private SimpleMeterRegistry meterRegistry;
+    private TransferRunner transferRunner;
+
+    @BeforeEach
+    void setUp() {
+        transactionManager = mock(PlatformTransactionManager.class);
+        meterRegistry = new SimpleMeterRegistry();
+        transferRunner = new TransferRunner(transactionManager, "optimistic", 3, Duration.ofMillis(1),
+                Duration.ofMillis(5), meterRegistry);
+    }
+
+    private double count(String name) {
+        return meterRegistry.get(name).tag("locking", "optimistic").counter().count();
+    }
+
+    @Test
+    void testConflictIsRetriedInANewTransaction() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = transferRunner.run(() -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new ObjectOptimisticLockingFailureException(Account.class, 1L);
+            }
+            return "done";
+        });
+
+        assertEquals("done", result);
+        assertEquals(3, attempts.get());
+        verify(transactionManager, times(3)).getTransaction(any());
+        verify(transactionManager, times(2)).rollback(any());
+        assertEquals(2, count("transactions.transfer.conflicts"));
+        assertEquals(2, count("transactions.transfer.retries"));
+        assertEquals(1, meterRegistry.get("transactions.transfer").tag("locking", "optimistic").timer().count());
+    }
+
+    @Test
+    void testGivesUpAfterMaxAttempts() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(ConcurrencyFailureException.class, () -> transferRunner.run(() -> {
+            attempts.incrementAndGet();
+            throw new ObjectOptimisticLockingFailureException(Account.class, 1L);
+        }));
+
+        assertEquals(3, attempts.get());
+        assertEquals(3, count("transactions.transfer.conflicts"));
+        assertEquals(2, count("transactions.transfer.retries"));
+    }
+
+    @Test
+    void testCheckedExceptionIsRolledBackAndNotRetried() {
+        Exception failure = new Exception("this transaction is not whit accounts from our bank");
+        AtomicInteger attempts = new AtomicInteger();
+
+        Exception thrown = assertThrows(Exception.class, () -> transferRunner.run(() -> {
+            attempts.incrementAndGet();
+            throw failure;
+        }));
+
+        assertSame(failure, thrown);
+        assertEquals(1, attempts.get());
+        verify(transactionManager).rollback(any());
+        verify(transactionManager, never()).commit(any());
+        assertEquals(0, count("transactions.transfer.conflicts"));
+    }
+
+    @Test
+    void testLockingMode() {
+        assertEquals(TransferRunner.Locking.OPTIMISTIC, transferRunner.getLocking());
+        assertEquals(TransferRunner.Locking.CONDITIONAL, new TransferRunner(transactionManager, " Conditional", 1,
+                Duration.ZERO, Duration.ZERO, meterRegistry).getLocking());
+        assertThrows(IllegalArgumentException.class, () -> new TransferRunner(transactionManager, "none", 1,
+                Duration.ZERO, Duration.ZERO, meterRegistry));
+    }
+}
@@ -0,0 +1,170 @@
+package com.krachbank.api.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import com.krachbank.api.models.User;
+import com.krachbank.api.repository.AuthenticationRepository;
+import com.krachbank.api.repository.UserRepository;
+import com.krachbank.api.security.CalibratedBCryptPasswordEncoder;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class UserDetailsServiceImplTest {
+
+    private AuthenticationRepository authenticationRepository;
+    private UserRepository userRepository;
+    private UserDetailsServiceImpl userDetailsService;
+    private UserServiceJpa userService;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        authenticationRepository = mock(AuthenticationRepository.class);
+        userRepository = mock(UserRepository.class);
+        userDetailsService = new UserDetailsServiceImpl(authenticationRepository, Duration.ofMinutes(5), 100,
+                new SimpleMeterRegistry());
+        userService = new UserServiceJpa(userRepository, mock(BCryptPasswordEncoder.class), userDetailsService,
+                mock(TokenVersionService.class), mock(KnownUserService.class));
+
+        user = new User();
+        user.setId(1L);
+        user.setUsername("alice");
+        user.setActive(true);
+        when(authenticationRepository.findByUsername("alice")).thenReturn(Optional.of(user));
+    }
+
+    @Test
+    void testLoadUserByUsernameOnlyQueriesOnce() {
+        assertSame(user, userDetailsService.loadUserByUsername("alice"));
+        assertSame(user, userDetailsService.loadUserByUsername("alice"));
+
+        verify(authenticationRepository, times(1)).findByUsername("alice");
+    }
+
+    @Test
+    void testUnknownUserIsNotCached() {
+        when(authenticationRepository.findByUsername("bob")).thenReturn(Optional.empty());
+
+        assertThrows(UsernameNotFoundException.class, () -> userDetailsService.loadUserByUsername("bob"));
+        assertThrows(UsernameNotFoundException.class, () -> userDetailsService.loadUserByUsername("bob"));
+
+        verify(authenticationRepository, times(2)).findByUsername("bob");
+    }
+
+    @Test
+    void testDeactivatedUserIsLockedOutImmediately() {
+        assertTrue(userDetailsService.loadUserByUsername("alice").isEnabled());
+
+        User deactivated = new User();
+        deactivated.setId(1L);
+        deactivated.setUsername("alice");
+        deactivated.setActive(false);
+        when(userRepository.findById(1L)).thenReturn(Optional.of(deactivated));
+        when(userRepository.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(authenticationRepository.findByUsername("alice")).thenReturn(Optional.of(deactivated));
+
+        userService.deactivateUser(1L);
+
+        assertFalse(userDetailsService.loadUserByUsername("alice").isEnabled());
+    }
+
+    @Test
+    void testUpdateUserEvictsOldAndNewUsername() {
+        userDetailsService.loadUserByUsername("alice");
+
+        User renamed = new User();
+        renamed.setUsername("alice2");
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+        when(userRepository.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        userService.updateUser(1L, renamed);
+        userDetailsService.loadUserByUsername("alice");
+
+        verify(authenticationRepository, times(2)).findByUsername("alice");
+    }
+
+    @Test
+    void testVerifyUserOnlyCopiesTheVerifiedFields() {
+        user.setPhoneNumber("0612345678");
+        user.setVersion(3);
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+        when(userRepository.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // what a client sends, without a version and without the fields it does not know about
+        User body = new User();
+        body.setId(1L);
+        body.setEmail("alice@example.com");
+        body.setFirstName("Alice");
+        body.setLastName("Smith");
+        body.setBSN(123456789);
+        body.setVerified(true);
+
+        userService.verifyUser(body);
+
+        verify(userRepository).save(user);
+        assertTrue(user.isVerified());
+        assertEquals("Alice", user.getFirstName());
+        assertEquals("alice", user.getUsername());
+        assertEquals("0612345678", user.getPhoneNumber());
+        assertEquals(3, user.getVersion());
+    }
+
+    private DaoAuthenticationProvider provider(int cost) {
+        DaoAuthenticationProvider provider = new DaoAuthenticationProvider();
+        provider.setUserDetailsService(userDetailsService);
+        provider.setPasswordEncoder(new CalibratedBCryptPasswordEncoder(cost));
+        provider.setUserDetailsPasswordService(userDetailsService);
+        return provider;
+    }
+
+    @Test
+    void testLoginRehashesPasswordWithALowerCost() {
+        user.setPassword(new CalibratedBCryptPasswordEncoder(4).encode("secret"));
+        when(authenticationRepository.updatePassword(eq("alice"), any())).thenReturn(1);
+
+        provider(5).authenticate(new UsernamePasswordAuthenticationToken("alice", "secret"));
+
+        verify(authenticationRepository).updatePassword(eq("alice"), startsWith("$2a$05$"));
+    }
+
+    @Test
+    void testLoginKeepsPasswordWithAHigherCost() {
+        // hashed by a node that calibrated higher
+        user.setPassword(new CalibratedBCryptPasswordEncoder(5).encode("secret"));
+
+        provider(4).authenticate(new UsernamePasswordAuthenticationToken("alice", "secret"));
+
+        verify(authenticationRepository, never()).updatePassword(any(), any());
+    }
+
+    @Test
+    void testLoginKeepsPasswordWithTheSameCost() {
+        user.setPassword(new CalibratedBCryptPasswordEncoder(4).encode("secret"));
+
+        provider(4).authenticate(new UsernamePasswordAuthenticationToken("alice", "secret"));
+
+        verify(authenticationRepository, never()).updatePassword(any(), any());
+    }
+}